@@ -15,8 +15,12 @@ package com.dgmltn.ranger;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Path;
 import android.graphics.PointF;
 import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.SweepGradient;
 import android.util.AttributeSet;
 
 import com.dgmltn.ranger.internal.AbsRangeBar;
@@ -28,12 +32,27 @@ import com.dgmltn.ranger.internal.ArcUtils;
  */
 public class ArcRangeBar extends AbsRangeBar {
 
-    private static final float ARC_START = 150f;
-    private static final float ARC_SWEEP = 240f;
+    static final float ARC_START = 150f;
+    static final float ARC_SWEEP = 240f;
 
     private PointF mCenter = new PointF();
     private float mRadius = 1f;
-    private RectF mBounds = new RectF();
+
+    // Bounds of the circle, for native arc drawing
+    private final RectF mOval = new RectF();
+    private int mArcMode = ArcUtils.MODE_BEZIER;
+
+    // Bézier segments per circle, lowered along with the render quality
+    private int mArcPointsOnCircle = ArcUtils.DEFAULT_POINTS_ON_CIRCLE;
+
+    // Arc paths owned by the bar, refilled in place on every draw
+    private final Path mFirstBarPath = new Path();
+    private final Path mSecondBarPath = new Path();
+    private final float[] mBarSegments = new float[4];
+    private final Path mFirstConnectingLinePath = new Path();
+    private final Path mSecondConnectingLinePath = new Path();
+
+    private final PointF mSpanPoint = new PointF();
 
     // Constructor /////////////////////////////////////////////////////////////
 
@@ -58,104 +77,151 @@ public class ArcRangeBar extends AbsRangeBar {
         float pw = w - getPaddingLeft() - getPaddingRight();
         float ph = h - getPaddingTop() - getPaddingBottom();
 
-        calculateBounds();
-
-        float scale = Math.min(pw / mBounds.width(), ph / mBounds.height());
-        mRadius *= scale;
+        mRadius = BarGeometry.layoutArc(getPaddingLeft(), getPaddingTop(), pw, ph, mCenter);
+        ArcUtils.setOval(mCenter, mRadius, mOval);
+    }
 
-        calculateBounds();
+    /**
+     * Sets how the bar and connecting line arcs are drawn.
+     *
+     * @param arcMode {@link ArcUtils#MODE_BEZIER} (default) or {@link ArcUtils#MODE_NATIVE}
+     */
+    public void setArcMode(int arcMode) {
+        if (mArcMode != arcMode) {
+            mArcMode = arcMode;
+            scheduleInvalidate();
+        }
+    }
 
-        float dx = -mBounds.left + pw / 2 - mBounds.width() / 2 + getPaddingLeft();
-        float dy = -mBounds.top + ph / 2 - mBounds.height() / 2 + getPaddingTop();
-        mCenter.offset(dx, dy);
-        mBounds.offset(dx, dy);
+    public int getArcMode() {
+        return mArcMode;
     }
 
+    // The touch path below uses the fast angle approximation, and only falls back to the exact
+    // angle when the fast one is too close to a threshold to be sure of the result.
+
     @Override
     public int comparePointsOnBar(PointF point1, PointF point2) {
-        float angle1 = getNormalizedAngle(point1);
-        float angle2 = getNormalizedAngle(point2);
-        return Float.compare(angle1, angle2);
+        return BarGeometry.compareArcPoints(point1.x - mCenter.x, point1.y - mCenter.y,
+                point2.x - mCenter.x, point2.y - mCenter.y);
     }
 
     @Override
     public void getNearestPointOnBar(PointF pointIn, PointF pointOut) {
-        float normalized = getNormalizedAngle(pointIn);
-        pointOut.set(ArcUtils.pointFromAngleDegrees(mCenter, mRadius, normalized + ARC_START));
+        float dx = pointIn.x - mCenter.x;
+        float dy = pointIn.y - mCenter.y;
+        float normalized = BarGeometry.getFastArcAngle(dx, dy);
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length > 0f && normalized > BarGeometry.FAST_ANGLE_TOLERANCE
+                && normalized < ARC_SWEEP - BarGeometry.FAST_ANGLE_TOLERANCE) {
+            // Inside the sweep the nearest point is straight along the radius; no angle needed
+            float scale = mRadius / length;
+            pointOut.set(mCenter.x + dx * scale, mCenter.y + dy * scale);
+        } else {
+            normalized = BarGeometry.getArcAngle(dx, dy);
+            ArcUtils.pointFromAngleDegrees(mCenter, mRadius, normalized + ARC_START, pointOut);
+        }
     }
 
     @Override
     public int getNearestIndex(PointF point) {
-        float normalized = getNormalizedAngle(point);
-        float mTickDegrees = ARC_SWEEP / (getTickCount() - 1f);
-        return (int) (normalized / mTickDegrees + 0.5f);
+        return BarGeometry.getNearestArcIndex(point.x - mCenter.x, point.y - mCenter.y,
+                getTickCount());
     }
 
     @Override
-    public void getPointOfIndex(int index, PointF pointOut) {
-        float mTickDegrees = ARC_SWEEP / (getTickCount() - 1f);
-        pointOut.set(ArcUtils.pointFromAngleDegrees(mCenter, mRadius, ARC_START + mTickDegrees * index));
+    protected void computePointOfIndex(int index, PointF pointOut) {
+        ArcUtils.pointFromAngleDegrees(mCenter, mRadius,
+                ARC_START + BarGeometry.getArcTickAngle(getTickCount(), index), pointOut);
     }
 
     @Override
-    public void drawBar(Canvas canvas) {
-        ArcUtils.drawArc(canvas, mCenter, mRadius, ARC_START, ARC_SWEEP, mBarPaint);
+    protected void computeTickPoints(float[] pointsOut) {
+        BarGeometry.fillArcTickPoints(mCenter.x, mCenter.y, mRadius, getTickCount(), pointsOut);
     }
 
     @Override
-    public void drawConnectingLine(Canvas canvas, PointF left, PointF right) {
-        if (mConnectingLineInverted) {
-            float angle1;
-            float angle2;
-            float sweep;
-
-            angle1 = ARC_START;
-            angle2 = getAngle(left) + 720f;
-            sweep = (angle2 - angle1) % 360f;
-            ArcUtils.drawArc(canvas, mCenter, mRadius, angle1, sweep, mFirstConnectingLinePaint);
-
-            angle1 = getAngle(right);
-            angle2 = ARC_START + ARC_SWEEP + 720f;
-            sweep = (angle2 - angle1) % 360f;
-            ArcUtils.drawArc(canvas, mCenter, mRadius, angle1, sweep, mSecondConnectingLinePaint);
-        } else {
-            float angle1 = getAngle(left);
-            float angle2 = getAngle(right) + 720f;
-            float sweep = (angle2 - angle1) % 360f;
-            ArcUtils.drawArc(canvas, mCenter, mRadius, angle1, sweep, mFirstConnectingLinePaint);
+    protected void getBarSpanBounds(PointF point1, PointF point2, RectF boundsOut) {
+        super.getBarSpanBounds(point1, point2, boundsOut);
+
+        // Add the extremes of the circle that fall inside the span
+        float angle1 = getNormalizedAngle(point1);
+        float angle2 = getNormalizedAngle(point2);
+        float start = ARC_START + Math.min(angle1, angle2);
+        float end = ARC_START + Math.max(angle1, angle2);
+        for (float angle = (float) Math.ceil(start / 90f) * 90f; angle < end; angle += 90f) {
+            ArcUtils.pointFromAngleDegrees(mCenter, mRadius, angle, mSpanPoint);
+            boundsOut.union(mSpanPoint.x, mSpanPoint.y);
         }
     }
 
-    // Private members /////////////////////////////////////////////////////////////
+    @Override
+    public void drawBar(Canvas canvas, PointF left, PointF right) {
+        BarGeometry.drawArcBar(canvas, mArcMode, mCenter, mRadius, mOval, mArcPointsOnCircle,
+                getNormalizedAngle(left), getNormalizedAngle(right), mConnectingLineInverted,
+                mBarPaint, mFirstConnectingLinePaint, mSecondConnectingLinePaint, mFirstBarPath,
+                mSecondBarPath, mBarSegments);
+    }
 
-    private void calculateBounds() {
-        PointF test = new PointF(mCenter.x - mRadius, mCenter.y);
-        getNearestPointOnBar(test, test);
-        mBounds.set(test.x, test.y, test.x, test.y);
+    @Override
+    public void drawConnectingLine(Canvas canvas, PointF left, PointF right) {
+        BarGeometry.drawArcConnectingLine(canvas, mArcMode, mCenter, mRadius, mOval,
+                mArcPointsOnCircle, getNormalizedAngle(left), getNormalizedAngle(right),
+                mConnectingLineInverted, mFirstConnectingLinePaint, mSecondConnectingLinePaint,
+                mFirstConnectingLinePath, mSecondConnectingLinePath);
+    }
 
-        test.set(mCenter.x + mRadius, mCenter.y);
-        getNearestPointOnBar(test, test);
-        mBounds.union(test.x, test.y);
+    @Override
+    protected void onRenderQualityChanged(int quality) {
+        super.onRenderQualityChanged(quality);
+        switch (quality) {
+            case RENDER_QUALITY_LOW:
+                mArcPointsOnCircle = 4;
+                break;
+            case RENDER_QUALITY_MEDIUM:
+                mArcPointsOnCircle = 6;
+                break;
+            default:
+                mArcPointsOnCircle = ArcUtils.DEFAULT_POINTS_ON_CIRCLE;
+                break;
+        }
+    }
 
-        test.set(mCenter.x, mCenter.y - mRadius);
-        getNearestPointOnBar(test, test);
-        mBounds.union(test.x, test.y);
+    @Override
+    protected void getAxisLabelCenter(int index, float gap, float halfWidth, float halfHeight,
+                                      PointF centerOut) {
+        // Move inward along the radius, far enough that the label box clears the arc
+        getPointOfIndex(index, centerOut);
+        float dx = mCenter.x - centerOut.x;
+        float dy = mCenter.y - centerOut.y;
+        float length = (float) Math.hypot(dx, dy);
+        if (length > 0) {
+            dx /= length;
+            dy /= length;
+            float distance = gap + Math.abs(dx) * halfWidth + Math.abs(dy) * halfHeight;
+            centerOut.offset(dx * distance, dy * distance);
+        }
+    }
 
-        test.set(mCenter.x, mCenter.y + mRadius);
-        getNearestPointOnBar(test, test);
-        mBounds.union(test.x, test.y);
+    @Override
+    protected Shader createColorRampShader(int[] colors, float[] positions) {
+        // A sweep gradient always spans the full circle, so squeeze the ramp into the arc's sweep
+        float[] sweepPositions = new float[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            float position = positions == null ? i / (colors.length - 1f) : positions[i];
+            sweepPositions[i] = position * ARC_SWEEP / 360f;
+        }
+        return new SweepGradient(0f, 0f, colors, sweepPositions);
     }
 
-    /**
-     * Returns the angle between 0 and the point.
-     *
-     * @param target
-     * @return
-     */
-    private float getAngle(PointF target) {
-        return (float) Math.toDegrees(Math.atan2(target.y - mCenter.y, target.x - mCenter.x));
+    @Override
+    protected void getColorRampMatrix(Matrix matrixOut) {
+        matrixOut.setRotate(ARC_START);
+        matrixOut.postTranslate(mCenter.x, mCenter.y);
     }
 
+    // Private members /////////////////////////////////////////////////////////////
+
     /**
      * Returns the angle between ARC_START and the point.
      *
@@ -163,14 +229,6 @@ public class ArcRangeBar extends AbsRangeBar {
      * @return
      */
     private float getNormalizedAngle(PointF target) {
-        float normalized = (getAngle(target) - ARC_START + 720f) % 360f;
-
-        if (normalized >= ARC_SWEEP / 2f + 180f) {
-            normalized = 0f;
-        } else if (normalized > ARC_SWEEP) {
-            normalized = ARC_SWEEP;
-        }
-
-        return normalized;
+        return BarGeometry.getArcAngle(target.x - mCenter.x, target.y - mCenter.y);
     }
 }
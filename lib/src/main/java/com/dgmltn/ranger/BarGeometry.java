@@ -0,0 +1,311 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.dgmltn.ranger;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import com.dgmltn.ranger.internal.ArcUtils;
+
+import static com.dgmltn.ranger.ArcRangeBar.ARC_START;
+import static com.dgmltn.ranger.ArcRangeBar.ARC_SWEEP;
+
+/**
+ * Layout and drawing of the horizontal and arc bars, shared by {@link HorizontalRangeBar},
+ * {@link ArcRangeBar} and {@link RangeBarRenderer} so that they all draw exactly the same
+ * geometry.
+ * <p/>
+ * Arc angles are normalized: 0 is the start of the arc and {@link ArcRangeBar#ARC_SWEEP} its
+ * end.
+ */
+final class BarGeometry {
+
+    // Angles past this are clamped to the start of the arc rather than to its end
+    static final float ARC_CLAMP_SPLIT = ARC_SWEEP / 2f + 180f;
+
+    // How close a fast angle may come to a threshold before the exact angle is computed instead;
+    // the approximation error plus some room for float rounding
+    static final float FAST_ANGLE_TOLERANCE = ArcUtils.FAST_ATAN2_MAX_ERROR_DEGREES * 2f;
+
+    private BarGeometry() {
+    }
+
+    // Horizontal /////////////////////////////////////////////////////////////
+
+    /**
+     * @return the x of the tick at the given index on a horizontal bar from leftX to rightX
+     */
+    static float getHorizontalTickX(float leftX, float rightX, int tickCount, int index) {
+        if (index == tickCount - 1) {
+            // Avoid any rounding discrepancies
+            return rightX;
+        }
+        return leftX + (rightX - leftX) / (tickCount - 1f) * index;
+    }
+
+    /**
+     * Fills the x and y of every tick on a horizontal bar into pointsOut, which must hold at
+     * least tickCount points.
+     */
+    static void fillHorizontalTickPoints(float leftX, float rightX, float y, int tickCount,
+                                         float[] pointsOut) {
+        for (int i = 0; i < tickCount; i++) {
+            pointsOut[i * 2] = getHorizontalTickX(leftX, rightX, tickCount, i);
+            pointsOut[i * 2 + 1] = y;
+        }
+    }
+
+    /**
+     * Draws a horizontal bar, leaving out the parts that the connecting line fully covers.
+     *
+     * @param segmentsOut scratch space for {@link #getBarSegments}; holds at least 4 floats
+     */
+    static void drawHorizontalBar(Canvas canvas, float leftX, float rightX, float y, float x1,
+                                  float x2, boolean inverted, Paint barPaint, Paint firstPaint,
+                                  Paint secondPaint, float[] segmentsOut) {
+        int count = getBarSegments(leftX, rightX, x1, x2, inverted,
+                coversBar(firstPaint, barPaint), coversBar(secondPaint, barPaint), segmentsOut);
+        for (int i = 0; i < count; i++) {
+            canvas.drawLine(segmentsOut[i * 2], y, segmentsOut[i * 2 + 1], y, barPaint);
+        }
+    }
+
+    /**
+     * Draws the connecting line of a horizontal bar between x1 and x2, or from both ends of the
+     * bar to them when inverted.
+     */
+    static void drawHorizontalConnectingLine(Canvas canvas, float leftX, float rightX, float y,
+                                             float x1, float x2, boolean inverted,
+                                             Paint firstPaint, Paint secondPaint) {
+        if (inverted) {
+            canvas.drawLine(leftX, y, x1, y, firstPaint);
+            canvas.drawLine(x2, y, rightX, y, secondPaint);
+        } else {
+            canvas.drawLine(x1, y, x2, y, firstPaint);
+        }
+    }
+
+    // Arc /////////////////////////////////////////////////////////////
+
+    /**
+     * Scales and centers the arc to fit inside the given box.
+     *
+     * @param left      left edge of the box
+     * @param top       top edge of the box
+     * @param width     width of the box
+     * @param height    height of the box
+     * @param centerOut receives the center of the circle
+     * @return the radius of the circle
+     */
+    static float layoutArc(float left, float top, float width, float height, PointF centerOut) {
+        // Bounds of the arc on a unit circle around the origin: its end points, plus any
+        // extremes of the circle that fall inside the sweep
+        double startRadians = Math.toRadians(ARC_START);
+        double endRadians = Math.toRadians(ARC_START + ARC_SWEEP);
+        float minX = (float) Math.min(Math.cos(startRadians), Math.cos(endRadians));
+        float maxX = (float) Math.max(Math.cos(startRadians), Math.cos(endRadians));
+        float minY = (float) Math.min(Math.sin(startRadians), Math.sin(endRadians));
+        float maxY = (float) Math.max(Math.sin(startRadians), Math.sin(endRadians));
+        float end = ARC_START + ARC_SWEEP;
+        for (float angle = (float) Math.ceil(ARC_START / 90f) * 90f; angle < end; angle += 90f) {
+            double radians = Math.toRadians(angle);
+            minX = Math.min(minX, (float) Math.cos(radians));
+            maxX = Math.max(maxX, (float) Math.cos(radians));
+            minY = Math.min(minY, (float) Math.sin(radians));
+            maxY = Math.max(maxY, (float) Math.sin(radians));
+        }
+
+        float radius = Math.min(width / (maxX - minX), height / (maxY - minY));
+        centerOut.set(left + width / 2f - radius * (minX + maxX) / 2f,
+                top + height / 2f - radius * (minY + maxY) / 2f);
+        return radius;
+    }
+
+    /**
+     * Gets the normalized angle of a point, clamped to the nearest end of the arc.
+     *
+     * @param dx x of the point relative to the center of the circle
+     * @param dy y of the point relative to the center of the circle
+     */
+    static float getArcAngle(float dx, float dy) {
+        return clampArcAngle((float) Math.toDegrees(Math.atan2(dy, dx)) - ARC_START + 720f);
+    }
+
+    /**
+     * Same as {@link #getArcAngle(float, float)}, to within {@link #FAST_ANGLE_TOLERANCE}, using
+     * {@link ArcUtils#fastAtan2Degrees(float, float)}. Always clamps to the same end of the arc
+     * as the exact angle.
+     */
+    static float getFastArcAngle(float dx, float dy) {
+        float angle = ArcUtils.fastAtan2Degrees(dy, dx) - ARC_START + 720f;
+        if (Math.abs(angle % 360f - ARC_CLAMP_SPLIT) <= FAST_ANGLE_TOLERANCE) {
+            // Can't tell which end of the arc this clamps to
+            return getArcAngle(dx, dy);
+        }
+        return clampArcAngle(angle);
+    }
+
+    /**
+     * Gets the index of the tick nearest to a point, from the fast angle unless the point is too
+     * close to the middle between two ticks to be sure; always the same as from the exact angle.
+     */
+    static int getNearestArcIndex(float dx, float dy, int tickCount) {
+        float tickDegrees = getArcTickAngle(tickCount, 1);
+        float ticks = getFastArcAngle(dx, dy) / tickDegrees + 0.5f;
+        float fraction = ticks - (float) Math.floor(ticks);
+        float margin = FAST_ANGLE_TOLERANCE / tickDegrees;
+        if (fraction < margin || fraction > 1f - margin) {
+            // Too close to the middle between two ticks
+            ticks = getArcAngle(dx, dy) / tickDegrees + 0.5f;
+        }
+        return (int) ticks;
+    }
+
+    /**
+     * Compares the normalized angles of two points, from the fast angles unless they are too
+     * close to tell apart; always the same as comparing the exact angles.
+     */
+    static int compareArcPoints(float dx1, float dy1, float dx2, float dy2) {
+        float angle1 = getFastArcAngle(dx1, dy1);
+        float angle2 = getFastArcAngle(dx2, dy2);
+        if (Math.abs(angle1 - angle2) <= FAST_ANGLE_TOLERANCE * 2f) {
+            angle1 = getArcAngle(dx1, dy1);
+            angle2 = getArcAngle(dx2, dy2);
+        }
+        return Float.compare(angle1, angle2);
+    }
+
+    // Takes an angle relative to ARC_START, plus some turns to keep it positive
+    private static float clampArcAngle(float angle) {
+        float normalized = angle % 360f;
+        if (normalized >= ARC_CLAMP_SPLIT) {
+            normalized = 0f;
+        } else if (normalized > ARC_SWEEP) {
+            normalized = ARC_SWEEP;
+        }
+        return normalized;
+    }
+
+    /**
+     * @return the normalized angle of the tick at the given index
+     */
+    static float getArcTickAngle(int tickCount, int index) {
+        return ARC_SWEEP / (tickCount - 1f) * index;
+    }
+
+    /**
+     * Fills the x and y of every tick on the arc into pointsOut, which must hold at least
+     * tickCount points.
+     */
+    static void fillArcTickPoints(float centerX, float centerY, float radius, int tickCount,
+                                  float[] pointsOut) {
+        for (int i = 0; i < tickCount; i++) {
+            ArcUtils.pointFromAngleRadians(centerX, centerY, radius,
+                    Math.toRadians(ARC_START + getArcTickAngle(tickCount, i)), pointsOut, i * 2);
+        }
+    }
+
+    /**
+     * Draws the arc of the bar, leaving out the parts that the connecting line fully covers.
+     *
+     * @param angle1      normalized angle of the first pin
+     * @param angle2      normalized angle of the second pin; not less than angle1
+     * @param segmentsOut scratch space for {@link #getBarSegments}; holds at least 4 floats
+     */
+    static void drawArcBar(Canvas canvas, int arcMode, PointF center, float radius, RectF oval,
+                           int pointsOnCircle, float angle1, float angle2, boolean inverted,
+                           Paint barPaint, Paint firstPaint, Paint secondPaint, Path firstPath,
+                           Path secondPath, float[] segmentsOut) {
+        int count = getBarSegments(0f, ARC_SWEEP, angle1, angle2, inverted,
+                coversBar(firstPaint, barPaint), coversBar(secondPaint, barPaint), segmentsOut);
+        for (int i = 0; i < count; i++) {
+            ArcUtils.drawArc(canvas, arcMode, center, radius, ARC_START + segmentsOut[i * 2],
+                    segmentsOut[i * 2 + 1] - segmentsOut[i * 2], barPaint, pointsOnCircle,
+                    i == 0 ? firstPath : secondPath, oval);
+        }
+    }
+
+    /**
+     * Draws the connecting line along the arc between the pins, or from both ends of the arc to
+     * them when inverted. Unlike the bar, an empty connecting line is still drawn as a single
+     * point, so pins at the same index stay joined.
+     *
+     * @param angle1 normalized angle of the first pin
+     * @param angle2 normalized angle of the second pin; not less than angle1
+     */
+    static void drawArcConnectingLine(Canvas canvas, int arcMode, PointF center, float radius,
+                                      RectF oval, int pointsOnCircle, float angle1, float angle2,
+                                      boolean inverted, Paint firstPaint, Paint secondPaint,
+                                      Path firstPath, Path secondPath) {
+        if (inverted) {
+            ArcUtils.drawArc(canvas, arcMode, center, radius, ARC_START, angle1, firstPaint,
+                    pointsOnCircle, firstPath, oval);
+            ArcUtils.drawArc(canvas, arcMode, center, radius, ARC_START + angle2,
+                    ARC_SWEEP - angle2, secondPaint, pointsOnCircle, secondPath, oval);
+        } else {
+            ArcUtils.drawArc(canvas, arcMode, center, radius, ARC_START + angle1, angle2 - angle1,
+                    firstPaint, pointsOnCircle, firstPath, oval);
+        }
+    }
+
+    // Bar /////////////////////////////////////////////////////////////
+
+    /**
+     * @return true if a connecting line drawn with linePaint hides the bar under it: it is
+     * opaque and at least as wide as the bar
+     */
+    static boolean coversBar(Paint linePaint, Paint barPaint) {
+        return linePaint.getAlpha() == 255 && linePaint.getShader() == null
+                && linePaint.getStrokeWidth() >= barPaint.getStrokeWidth();
+    }
+
+    /**
+     * Works out which parts of the bar to draw, along the bar from start to end. A part of the
+     * connecting line is only left out of the bar when it fully covers it; otherwise the bar
+     * shows through and is drawn in full under it.
+     *
+     * @param p1           position of the first pin
+     * @param p2           position of the second pin; not less than p1
+     * @param firstCovers  whether the first part of the connecting line covers the bar: p1 to
+     *                     p2, or start to p1 when inverted
+     * @param secondCovers whether the second part of the connecting line, p2 to end when
+     *                     inverted, covers the bar
+     * @param segmentsOut  receives the start and end of each part to draw
+     * @return the number of parts to draw, up to 2; empty parts are left out
+     */
+    static int getBarSegments(float start, float end, float p1, float p2, boolean inverted,
+                              boolean firstCovers, boolean secondCovers, float[] segmentsOut) {
+        int count = 0;
+        if (inverted) {
+            count = addBarSegment(firstCovers ? p1 : start, secondCovers ? p2 : end, segmentsOut,
+                    count);
+        } else if (firstCovers) {
+            count = addBarSegment(start, p1, segmentsOut, count);
+            count = addBarSegment(p2, end, segmentsOut, count);
+        } else {
+            count = addBarSegment(start, end, segmentsOut, count);
+        }
+        return count;
+    }
+
+    private static int addBarSegment(float start, float end, float[] segmentsOut, int count) {
+        if (end > start) {
+            segmentsOut[count * 2] = start;
+            segmentsOut[count * 2 + 1] = end;
+            return count + 1;
+        }
+        return count;
+    }
+}
@@ -304,6 +304,14 @@ public class HorizontalMinMidMaxRangeBar
         mRangeBar.setFirstConnectingLineColor(color);
     }
 
+    /**
+     * @see AbsRangeBar#setConnectingLineColorRamp(int[], float[])
+     */
+    public void setConnectingLineColorRamp(int[] colors, float[] positions)
+    {
+        mRangeBar.setConnectingLineColorRamp(colors, positions);
+    }
+
     public void setFirstPinColor(int color)
     {
         mRangeBar.setFirstPinColor(color);
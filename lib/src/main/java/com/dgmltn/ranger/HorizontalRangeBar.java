@@ -2,7 +2,10 @@ package com.dgmltn.ranger;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
 import android.graphics.PointF;
+import android.graphics.Shader;
 import android.util.AttributeSet;
 
 import com.dgmltn.ranger.internal.AbsRangeBar;
@@ -21,6 +24,8 @@ public class HorizontalRangeBar extends AbsRangeBar {
     // Y position of the horizontal bar
     private float mY;
 
+    private final float[] mBarSegments = new float[4];
+
     // Constructor /////////////////////////////////////////////////////////////
 
     public HorizontalRangeBar(Context context) {
@@ -37,13 +42,29 @@ public class HorizontalRangeBar extends AbsRangeBar {
 
     // Implementation /////////////////////////////////////////////////////////////
 
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+
+        // Grow to fit the axis labels below the bar, unless the height is fixed
+        final int measureHeightMode = MeasureSpec.getMode(heightMeasureSpec);
+        if (measureHeightMode != MeasureSpec.EXACTLY) {
+            int height = getMeasuredHeight() + (int) Math.ceil(getAxisLabelsHeight());
+            if (measureHeightMode == MeasureSpec.AT_MOST) {
+                height = Math.min(height, MeasureSpec.getSize(heightMeasureSpec));
+            }
+            setMeasuredDimension(getMeasuredWidth(), height);
+        }
+    }
+
     @Override
     protected void resizeBar(int w, int h) {
         super.resizeBar(w, h);
 
         mLeftX = getPaddingLeft();
         mRightX = getWidth() - getPaddingRight();
-        mY = getHeight() - getPaddingBottom();
+        // The axis labels go below the bar
+        mY = getHeight() - getPaddingBottom() - getAxisLabelsHeight();
     }
 
     @Override
@@ -65,28 +86,37 @@ public class HorizontalRangeBar extends AbsRangeBar {
     }
 
     @Override
-    public void getPointOfIndex(int index, PointF pointOut) {
-        if (index == getTickCount() - 1) {
-            // Avoid any rounding discrepancies
-            pointOut.set(mRightX, mY);
-        } else {
-            pointOut.set(mLeftX + (getTickDistance() * index), mY);
-        }
+    protected void computePointOfIndex(int index, PointF pointOut) {
+        pointOut.set(BarGeometry.getHorizontalTickX(mLeftX, mRightX, getTickCount(), index), mY);
+    }
+
+    @Override
+    protected void computeTickPoints(float[] pointsOut) {
+        BarGeometry.fillHorizontalTickPoints(mLeftX, mRightX, mY, getTickCount(), pointsOut);
     }
 
     @Override
-    public void drawBar(Canvas canvas) {
-        canvas.drawLine(mLeftX, mY, mRightX, mY, mBarPaint);
+    public void drawBar(Canvas canvas, PointF left, PointF right) {
+        BarGeometry.drawHorizontalBar(canvas, mLeftX, mRightX, mY, left.x, right.x,
+                mConnectingLineInverted, mBarPaint, mFirstConnectingLinePaint,
+                mSecondConnectingLinePaint, mBarSegments);
     }
 
     @Override
     public void drawConnectingLine(Canvas canvas, PointF left, PointF right) {
-        if (mConnectingLineInverted) {
-            canvas.drawLine(mLeftX, mY, left.x, mY, mFirstConnectingLinePaint);
-            canvas.drawLine(right.x, mY, mRightX, mY, mSecondConnectingLinePaint);
-        } else {
-            canvas.drawLine(left.x, mY, right.x, mY, mFirstConnectingLinePaint);
-        }
+        BarGeometry.drawHorizontalConnectingLine(canvas, mLeftX, mRightX, mY, left.x, right.x,
+                mConnectingLineInverted, mFirstConnectingLinePaint, mSecondConnectingLinePaint);
+    }
+
+    @Override
+    protected Shader createColorRampShader(int[] colors, float[] positions) {
+        return new LinearGradient(0f, 0f, 1f, 0f, colors, positions, Shader.TileMode.CLAMP);
+    }
+
+    @Override
+    protected void getColorRampMatrix(Matrix matrixOut) {
+        matrixOut.setScale(mRightX - mLeftX, 1f);
+        matrixOut.postTranslate(mLeftX, 0f);
     }
 
     // Private members /////////////////////////////////////////////////////////////
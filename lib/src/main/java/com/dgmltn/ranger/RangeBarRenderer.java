@@ -0,0 +1,352 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language 
+ * governing permissions and limitations under the License. 
+ */
+
+package com.dgmltn.ranger;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import com.dgmltn.ranger.internal.AbsRangeBar;
+import com.dgmltn.ranger.internal.ArcUtils;
+import com.dgmltn.ranger.internal.TickLevelOfDetail;
+
+/**
+ * Draws read-only range bars straight to a {@link Canvas} or {@link Bitmap}, without creating
+ * or attaching a View. This is meant for list thumbnails, app widgets and other previews.
+ * <p/>
+ * The geometry is the same as {@link HorizontalRangeBar} and {@link ArcRangeBar} with
+ * temporary (collapsed) pins, and is laid out and drawn by the same code: the bar, the ticks
+ * (thinned out the same way when they are dense), the connecting line and a selector circle for
+ * each pin. Paints, paths and buffers are kept between calls, so a single instance can render
+ * any number of previews in a row. A renderer is not thread safe; use one per thread.
+ */
+public class RangeBarRenderer {
+
+    public static final int STYLE_HORIZONTAL = 0;
+    public static final int STYLE_ARC = 1;
+
+    private final Paint mBarPaint;
+    private final Paint mTickPaint;
+    private final Paint mFirstConnectingLinePaint;
+    private final Paint mSecondConnectingLinePaint;
+    private final Paint mFirstSelectorPaint;
+    private final Paint mSecondSelectorPaint;
+
+    private float mSelectorSize;
+    private float mMinTickSpacing;
+    private float mMajorTickSpacing;
+    private boolean mDrawTicks = true;
+    private boolean mIsRangeBar = true;
+    private boolean mConnectingLineInverted;
+    private int mArcMode = ArcUtils.MODE_BEZIER;
+
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+
+    // Reused between renders
+    private final Canvas mBitmapCanvas = new Canvas();
+    private final Path mFirstBarPath = new Path();
+    private final Path mSecondBarPath = new Path();
+    private final float[] mBarSegments = new float[4];
+    private final Path mFirstConnectingLinePath = new Path();
+    private final Path mSecondConnectingLinePath = new Path();
+    private final PointF mCenter = new PointF();
+    private final RectF mOval = new RectF();
+    private float[] mTickPoints = new float[0];
+    private final TickLevelOfDetail mTickLevelOfDetail = new TickLevelOfDetail();
+
+    // Geometry of the current render
+    private float mLeftX;
+    private float mRightX;
+    private float mY;
+    private float mRadius;
+
+    // Constructor /////////////////////////////////////////////////////////////
+
+    public RangeBarRenderer(Context context) {
+        float density = context.getResources().getDisplayMetrics().density;
+
+        mBarPaint = new Paint();
+        mBarPaint.setAntiAlias(true);
+        mBarPaint.setStyle(Paint.Style.STROKE);
+        mBarPaint.setColor(AbsRangeBar.DEFAULT_BAR_COLOR);
+        mBarPaint.setStrokeWidth(AbsRangeBar.DEFAULT_BAR_WEIGHT_DP * density);
+
+        // Ticks are drawn as round-capped points, so the stroke width is the tick diameter
+        mTickPaint = new Paint();
+        mTickPaint.setAntiAlias(true);
+        mTickPaint.setStrokeCap(Paint.Cap.ROUND);
+        mTickPaint.setColor(AbsRangeBar.DEFAULT_TICK_COLOR);
+        mTickPaint.setStrokeWidth(AbsRangeBar.DEFAULT_TICK_SIZE_DP * density * 2);
+        mMinTickSpacing = TickLevelOfDetail.DEFAULT_MIN_TICK_SPACING_DP * density;
+        mMajorTickSpacing = TickLevelOfDetail.DEFAULT_MAJOR_TICK_SPACING_DP * density;
+
+        mFirstConnectingLinePaint = createConnectingLinePaint(density);
+        mSecondConnectingLinePaint = createConnectingLinePaint(density);
+
+        mSelectorSize = AbsRangeBar.DEFAULT_CIRCLE_SIZE_DP * density;
+        mFirstSelectorPaint = createSelectorPaint();
+        mSecondSelectorPaint = createSelectorPaint();
+
+        int padding = (int) Math.ceil(mSelectorSize);
+        setPadding(padding, padding, padding, padding);
+    }
+
+    // Public Methods //////////////////////////////////////////////////////////
+
+    public void setBarWeight(float barWeight) {
+        mBarPaint.setStrokeWidth(barWeight);
+    }
+
+    public void setBarColor(int barColor) {
+        mBarPaint.setColor(barColor);
+    }
+
+    public void enableDrawTicks(boolean enable) {
+        mDrawTicks = enable;
+    }
+
+    /**
+     * @param size the radius of each tick, in pixels
+     */
+    public void setTickHeight(float size) {
+        mTickPaint.setStrokeWidth(size * 2);
+    }
+
+    public void setTickColor(int tickColor) {
+        mTickPaint.setColor(tickColor);
+    }
+
+    /**
+     * @param spacing the minimum distance between two drawn ticks, in pixels
+     * @see AbsRangeBar#setMinTickSpacing(float)
+     */
+    public void setMinTickSpacing(float spacing) {
+        mMinTickSpacing = spacing;
+    }
+
+    /**
+     * @param spacing the minimum distance between two major ticks, in pixels
+     * @see AbsRangeBar#setMajorTickSpacing(float)
+     */
+    public void setMajorTickSpacing(float spacing) {
+        mMajorTickSpacing = spacing;
+    }
+
+    public void setConnectingLineWeight(float connectingLineWeight) {
+        mFirstConnectingLinePaint.setStrokeWidth(connectingLineWeight);
+        mSecondConnectingLinePaint.setStrokeWidth(connectingLineWeight);
+    }
+
+    public void setConnectingLineColor(int connectingLineColor) {
+        setFirstConnectingLineColor(connectingLineColor);
+        setSecondConnectingLineColor(connectingLineColor);
+    }
+
+    public void setFirstConnectingLineColor(int connectingLineColor) {
+        mFirstConnectingLinePaint.setColor(connectingLineColor);
+    }
+
+    public void setSecondConnectingLineColor(int connectingLineColor) {
+        mSecondConnectingLinePaint.setColor(connectingLineColor);
+    }
+
+    public void setConnectingLineInverted(boolean inverted) {
+        mConnectingLineInverted = inverted;
+    }
+
+    /**
+     * @param arcMode {@link ArcUtils#MODE_BEZIER} (default) or {@link ArcUtils#MODE_NATIVE}
+     * @see ArcRangeBar#setArcMode(int)
+     */
+    public void setArcMode(int arcMode) {
+        mArcMode = arcMode;
+    }
+
+    /**
+     * @param selectorSize the radius of the selector circle drawn for each pin, in pixels
+     */
+    public void setSelectorSize(float selectorSize) {
+        mSelectorSize = selectorSize;
+    }
+
+    public void setSelectorColor(int selectorColor) {
+        setFirstSelectorColor(selectorColor);
+        setSecondSelectorColor(selectorColor);
+    }
+
+    public void setFirstSelectorColor(int selectorColor) {
+        mFirstSelectorPaint.setColor(selectorColor);
+    }
+
+    public void setSecondSelectorColor(int selectorColor) {
+        mSecondSelectorPaint.setColor(selectorColor);
+    }
+
+    /**
+     * Sets whether a range (two pins) or a single value (one pin) is drawn. For a single value
+     * only the first index is used.
+     *
+     * @param isRangeBar false to draw a single pin
+     */
+    public void setRangeBarEnabled(boolean isRangeBar) {
+        mIsRangeBar = isRangeBar;
+    }
+
+    /**
+     * Sets the space between the edges of the render area and the bar, just like View padding.
+     * Defaults to the selector size so that the selector circles are not clipped.
+     */
+    public void setPadding(int left, int top, int right, int bottom) {
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+    /**
+     * Draws a range bar over the whole bitmap. The bitmap is not cleared first.
+     *
+     * @param bitmap      a mutable bitmap to draw to
+     * @param style       {@link #STYLE_HORIZONTAL} or {@link #STYLE_ARC}
+     * @param tickCount   number of ticks; must be > 1
+     * @param firstIndex  index of the first pin
+     * @param secondIndex index of the second pin; ignored when not a range bar
+     */
+    public void render(Bitmap bitmap, int style, int tickCount, int firstIndex, int secondIndex) {
+        mBitmapCanvas.setBitmap(bitmap);
+        render(mBitmapCanvas, bitmap.getWidth(), bitmap.getHeight(), style, tickCount,
+                firstIndex, secondIndex);
+        mBitmapCanvas.setBitmap(null);
+    }
+
+    /**
+     * Draws a range bar into the area (0, 0, width, height) of the canvas. Translate the canvas
+     * first to draw somewhere else, e.g. to lay out many previews on a single canvas.
+     *
+     * @param canvas      the canvas to draw to
+     * @param width       width of the render area
+     * @param height      height of the render area
+     * @param style       {@link #STYLE_HORIZONTAL} or {@link #STYLE_ARC}
+     * @param tickCount   number of ticks; must be > 1
+     * @param firstIndex  index of the first pin
+     * @param secondIndex index of the second pin; ignored when not a range bar
+     */
+    public void render(Canvas canvas, int width, int height, int style, int tickCount,
+                       int firstIndex, int secondIndex) {
+        if (tickCount < 2) {
+            throw new IllegalArgumentException("tickCount(" + tickCount + ") must be > 1");
+        }
+        if (style != STYLE_HORIZONTAL && style != STYLE_ARC) {
+            throw new IllegalArgumentException("Unknown style " + style);
+        }
+
+        layout(style, width, height, tickCount);
+
+        firstIndex = clampIndex(firstIndex, tickCount);
+        secondIndex = mIsRangeBar ? clampIndex(secondIndex, tickCount) : firstIndex;
+        if (secondIndex < firstIndex) {
+            int temp = firstIndex;
+            firstIndex = secondIndex;
+            secondIndex = temp;
+        }
+
+        if (style == STYLE_ARC) {
+            float angle1 = BarGeometry.getArcTickAngle(tickCount, firstIndex);
+            float angle2 = BarGeometry.getArcTickAngle(tickCount, secondIndex);
+            BarGeometry.drawArcBar(canvas, mArcMode, mCenter, mRadius, mOval,
+                    ArcUtils.DEFAULT_POINTS_ON_CIRCLE, angle1, angle2, mConnectingLineInverted,
+                    mBarPaint, mFirstConnectingLinePaint, mSecondConnectingLinePaint,
+                    mFirstBarPath, mSecondBarPath, mBarSegments);
+            drawTicks(canvas, tickCount);
+            BarGeometry.drawArcConnectingLine(canvas, mArcMode, mCenter, mRadius, mOval,
+                    ArcUtils.DEFAULT_POINTS_ON_CIRCLE, angle1, angle2, mConnectingLineInverted,
+                    mFirstConnectingLinePaint, mSecondConnectingLinePaint,
+                    mFirstConnectingLinePath, mSecondConnectingLinePath);
+        } else {
+            float x1 = mTickPoints[firstIndex * 2];
+            float x2 = mTickPoints[secondIndex * 2];
+            BarGeometry.drawHorizontalBar(canvas, mLeftX, mRightX, mY, x1, x2,
+                    mConnectingLineInverted, mBarPaint, mFirstConnectingLinePaint,
+                    mSecondConnectingLinePaint, mBarSegments);
+            drawTicks(canvas, tickCount);
+            BarGeometry.drawHorizontalConnectingLine(canvas, mLeftX, mRightX, mY, x1, x2,
+                    mConnectingLineInverted, mFirstConnectingLinePaint,
+                    mSecondConnectingLinePaint);
+        }
+
+        canvas.drawCircle(mTickPoints[firstIndex * 2], mTickPoints[firstIndex * 2 + 1],
+                mSelectorSize, mFirstSelectorPaint);
+        if (mIsRangeBar) {
+            canvas.drawCircle(mTickPoints[secondIndex * 2], mTickPoints[secondIndex * 2 + 1],
+                    mSelectorSize, mSecondSelectorPaint);
+        }
+    }
+
+    // Private Methods /////////////////////////////////////////////////////////
+
+    private Paint createConnectingLinePaint(float density) {
+        Paint paint = new Paint();
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setAntiAlias(true);
+        paint.setColor(AbsRangeBar.DEFAULT_CONNECTING_LINE_COLOR);
+        paint.setStrokeWidth(AbsRangeBar.DEFAULT_CONNECTING_LINE_WEIGHT_DP * density);
+        return paint;
+    }
+
+    private Paint createSelectorPaint() {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(AbsRangeBar.DEFAULT_CONNECTING_LINE_COLOR);
+        return paint;
+    }
+
+    private static int clampIndex(int index, int tickCount) {
+        return Math.max(0, Math.min(tickCount - 1, index));
+    }
+
+    // Same layout and tick table as HorizontalRangeBar and ArcRangeBar
+    private void layout(int style, int width, int height, int tickCount) {
+        float pw = width - mPaddingLeft - mPaddingRight;
+        float ph = height - mPaddingTop - mPaddingBottom;
+
+        final int length = tickCount * 2;
+        if (mTickPoints.length < length) {
+            mTickPoints = new float[length];
+        }
+
+        if (style == STYLE_ARC) {
+            mRadius = BarGeometry.layoutArc(mPaddingLeft, mPaddingTop, pw, ph, mCenter);
+            ArcUtils.setOval(mCenter, mRadius, mOval);
+            BarGeometry.fillArcTickPoints(mCenter.x, mCenter.y, mRadius, tickCount, mTickPoints);
+        } else {
+            mLeftX = mPaddingLeft;
+            mRightX = width - mPaddingRight;
+            mY = height - mPaddingBottom;
+            BarGeometry.fillHorizontalTickPoints(mLeftX, mRightX, mY, tickCount, mTickPoints);
+        }
+    }
+
+    private void drawTicks(Canvas canvas, int tickCount) {
+        if (mDrawTicks) {
+            mTickLevelOfDetail.update(mTickPoints, tickCount, mMinTickSpacing, mMajorTickSpacing);
+            mTickLevelOfDetail.draw(canvas, mTickPoints, tickCount, mTickPaint);
+        }
+    }
+}
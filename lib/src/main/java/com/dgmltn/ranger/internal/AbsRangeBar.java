@@ -28,14 +28,21 @@ package com.dgmltn.ranger.internal;
 import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v4.util.Pools;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
@@ -45,6 +52,7 @@ import android.view.ViewParent;
 import com.dgmltn.ranger.R;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Traits taken from the following files:
@@ -72,22 +80,51 @@ public abstract class AbsRangeBar extends View {
 
     //private static final String TAG = PbLog.TAG(AbsRangeBar.class);
 
+    /**
+     * Full quality rendering.
+     */
+    public static final int RENDER_QUALITY_HIGH = 0;
+
+    /**
+     * Reduced quality: no tick anti-aliasing, and pins drawn from a cached sprite.
+     */
+    public static final int RENDER_QUALITY_MEDIUM = 1;
+
+    /**
+     * Lowest quality: as {@link #RENDER_QUALITY_MEDIUM}, plus ticks thinned out to twice the
+     * minimum tick spacing and no anti-aliasing of the axis labels.
+     */
+    public static final int RENDER_QUALITY_LOW = 2;
+
     // Default values for variables
     private static final int DEFAULT_TICK_COUNT = 5;
-    private static final float DEFAULT_TICK_SIZE_DP = 1;
+    public static final float DEFAULT_TICK_SIZE_DP = 1;
     private static final float DEFAULT_PIN_PADDING_DP = 16;
     public static final float DEFAULT_MIN_PIN_FONT_SP = 8;
     public static final float DEFAULT_MAX_PIN_FONT_SP = 24;
-    private static final float DEFAULT_BAR_WEIGHT_DP = 1;
-    private static final int DEFAULT_BAR_COLOR = Color.LTGRAY;
+    public static final float DEFAULT_BAR_WEIGHT_DP = 1;
+    public static final int DEFAULT_BAR_COLOR = Color.LTGRAY;
     private static final int DEFAULT_TEXT_COLOR = Color.WHITE;
-    private static final int DEFAULT_TICK_COLOR = Color.BLACK;
+    public static final int DEFAULT_TICK_COLOR = Color.BLACK;
     private static final int INDIGO_500 = 0xff3f51b5;
     private static final int DEFAULT_PIN_COLOR = INDIGO_500;
-    private static final float DEFAULT_CONNECTING_LINE_WEIGHT_DP = 2;
-    private static final int DEFAULT_CONNECTING_LINE_COLOR = INDIGO_500;
+    public static final float DEFAULT_CONNECTING_LINE_WEIGHT_DP = 2;
+    public static final int DEFAULT_CONNECTING_LINE_COLOR = INDIGO_500;
     private static final float DEFAULT_EXPANDED_PIN_RADIUS_DP = 12;
-    private static final float DEFAULT_CIRCLE_SIZE_DP = 5;
+    public static final float DEFAULT_CIRCLE_SIZE_DP = 5;
+    // Tick spacing multiplier at RENDER_QUALITY_LOW
+    private static final float LOW_QUALITY_TICK_SPACING_SCALE = 2f;
+
+    // Most labels measured when looking for the widest one; larger ranges are sampled
+    private static final int MAX_MEASURED_LABELS = 256;
+    // Most labels kept in the label cache; larger ranges are formatted on every change
+    private static final int MAX_CACHED_LABELS = 4096;
+    private static final float DEFAULT_AXIS_LABEL_TEXT_SIZE_SP = 12;
+    private static final float DEFAULT_AXIS_LABEL_OFFSET_DP = 4;
+    private static final float DEFAULT_AXIS_LABEL_SPACING_DP = 8;
+
+    // Frames to wait after a quality change before judging the new quality
+    private static final int RENDER_QUALITY_SETTLE_FRAMES = 30;
 
     // "natural" dimensions of this View for WRAP_CONTENT
     private static final int DEFAULT_WIDTH = 500;
@@ -104,6 +141,14 @@ public abstract class AbsRangeBar extends View {
     private int mTickColor;
     private int mTickCount;
     private boolean mDrawTicks = true;
+    private float mMinTickSpacing;
+    private float mMajorTickSpacing;
+
+    // Axis labels
+    private boolean mDrawAxisLabels;
+    private float mAxisLabelTextSize;
+    private float mAxisLabelOffset;
+    private float mAxisLabelSpacing;
 
     // Selectors
     private int mFirstSelectorColor;
@@ -123,6 +168,20 @@ public abstract class AbsRangeBar extends View {
     private int mFirstPinTextColor;
     private int mSecondPinTextColor;
     private boolean mArePinsTemporary = true;
+    private boolean mFixedWidthLabels;
+    private Paint mLabelMeasurePaint;
+    private String[] mLabelCache;
+    private boolean mPinSpriteCacheEnabled;
+    private boolean mGlyphAtlasLabelsEnabled;
+
+    // Adaptive render quality, judged by the time between frames that this view draws in
+    private long mFrameBudgetNanos;
+    private long mAverageFrameNanos;
+    private long mLastFrameTimeNanos;
+    private boolean mDrawnSinceLastFrame;
+    private boolean mFrameTimeCallbackPosted;
+    private int mFramesSinceQualityChange;
+    private int mRenderQuality = RENDER_QUALITY_HIGH;
 
     // Connecting Line
     private float mConnectingLineWeight;
@@ -133,6 +192,9 @@ public abstract class AbsRangeBar extends View {
     private OnRangeBarChangeListener mOnRangeBarChangeListener;
 
     private boolean mIsRangeBar = true;
+
+    // Enabled palette; the disabled palette is DEFAULT_BAR_COLOR throughout. The current colors
+    // above are resolved from one of the two, so state changes only swap paint colors.
     private int mActiveFirstConnectingLineColor;
     private int mActiveSecondConnectingLineColor;
     private int mActiveBarColor;
@@ -203,6 +265,10 @@ public abstract class AbsRangeBar extends View {
             float density = context.getResources().getDisplayMetrics().density;
             mTickSize = ta.getDimension(R.styleable.AbsRangeBar_tickHeight,
                     DEFAULT_TICK_SIZE_DP * density);
+            mMinTickSpacing = TickLevelOfDetail.DEFAULT_MIN_TICK_SPACING_DP * density;
+            mMajorTickSpacing = TickLevelOfDetail.DEFAULT_MAJOR_TICK_SPACING_DP * density;
+            mAxisLabelOffset = DEFAULT_AXIS_LABEL_OFFSET_DP * density;
+            mAxisLabelSpacing = DEFAULT_AXIS_LABEL_SPACING_DP * density;
             mBarWeight = ta.getDimension(R.styleable.AbsRangeBar_barWeight,
                     DEFAULT_BAR_WEIGHT_DP * density);
             mBarColor = ta.getColor(R.styleable.AbsRangeBar_rangeBarColor,
@@ -253,6 +319,7 @@ public abstract class AbsRangeBar extends View {
                     DEFAULT_MIN_PIN_FONT_SP * scaledDensity);
             mMaxPinFont = ta.getDimension(R.styleable.AbsRangeBar_pinMaxFont,
                     DEFAULT_MAX_PIN_FONT_SP * scaledDensity);
+            mAxisLabelTextSize = DEFAULT_AXIS_LABEL_TEXT_SIZE_SP * scaledDensity;
         } finally {
             if (recycle) {
                 ta.recycle();
@@ -316,6 +383,8 @@ public abstract class AbsRangeBar extends View {
             mTickCount = bundle.getInt("TICK_COUNT");
             mTickColor = bundle.getInt("TICK_COLOR");
             mTickSize = bundle.getFloat("TICK_SIZE");
+            mTickPaint.setStrokeWidth(mTickSize * 2);
+            updateBarSpanInset();
 
             mConnectingLineWeight = bundle.getFloat("CONNECTING_LINE_WEIGHT");
             mFirstConnectingLineColor = bundle.getInt("FIRST_CONNECTING_LINE_COLOR");
@@ -338,6 +407,11 @@ public abstract class AbsRangeBar extends View {
             mMinPinFont = bundle.getFloat("MIN_PIN_FONT");
             mMaxPinFont = bundle.getFloat("MAX_PIN_FONT");
 
+            updateTickPoints();
+            resetLabelCache();
+            updateFixedWidthLabel();
+            invalidateStaticLayer();
+
             super.onRestoreInstanceState(bundle.getParcelable("instanceState"));
         } else {
             super.onRestoreInstanceState(state);
@@ -382,7 +456,14 @@ public abstract class AbsRangeBar extends View {
         super.onSizeChanged(w, h, oldw, oldh);
 
         // This is the initial point at which we know the size of the View.
+        layoutBar(w, h);
+    }
+
+    private void layoutBar(int w, int h) {
         resizeBar(w, h);
+        updateTickPoints();
+        updateColorRampMatrix();
+        invalidateStaticLayer();
 
         initPins(false);
     }
@@ -390,25 +471,112 @@ public abstract class AbsRangeBar extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        mInvalidateRequested = false;
 
-        drawBar(canvas);
-        if (mDrawTicks) {
-            drawTicks(canvas);
+        drawBar(canvas, mFirstPinView.getPosition(), mSecondPinView.getPosition());
+        if (mDrawTicks || mDrawAxisLabels) {
+            drawStaticLayer(canvas);
         }
         drawConnectingLine(canvas, mFirstPinView, mSecondPinView);
         mFirstPinView.draw(canvas);
         if (mIsRangeBar) {
             mSecondPinView.draw(canvas);
         }
+
+        if (mFrameBudgetNanos > 0) {
+            mDrawnSinceLastFrame = true;
+            if (!mFrameTimeCallbackPosted) {
+                mFrameTimeCallbackPosted = true;
+                Choreographer.getInstance().postFrameCallback(mFrameTimeCallback);
+            }
+        }
     }
 
+    // Runs on the frame after each one this view draws in. Frame after frame, the time between
+    // them is the real frame time, draw, sync and any dropped frames included. Stops at the
+    // first frame without a draw, so idle time is never counted.
+    private final Choreographer.FrameCallback mFrameTimeCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mDrawnSinceLastFrame || mFrameBudgetNanos == 0) {
+                mFrameTimeCallbackPosted = false;
+                mLastFrameTimeNanos = 0;
+                return;
+            }
+            if (mLastFrameTimeNanos > 0) {
+                updateRenderQuality(frameTimeNanos - mLastFrameTimeNanos);
+            }
+            mLastFrameTimeNanos = frameTimeNanos;
+            mDrawnSinceLastFrame = false;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
     // Touch Methods ////////////////////////////////////////////////////////////
 
+    // Scratch state for dirty-rect invalidation
+    private final RectF mDirtyBounds = new RectF();
+    private final RectF mDirtyBoundsTemp = new RectF();
+    private final Rect mDirtyRect = new Rect();
+    private float mBarSpanInset;
+
+    // Whether a redraw was requested since the last draw; later requests are merged into it
+    private boolean mInvalidateRequested;
+    private int mSuppressedInvalidateCount;
+
+    // Set while running a frame callback (a drag frame or a pin animation update). Redraws
+    // requested from there still make this frame, so they are invalidated directly rather than
+    // posted to the next animation frame.
+    private boolean mInFrameCallback;
+
     private PinView mDraggingPin;
     private int mScaledTouchSlop;
-    private PointF mTouchDown;
+    private final PointF mTouchDown = new PointF();
+    private boolean mHasTouchDown;
     private boolean mIsTrackingTouch;
 
+    // Scratch state so that pressing, dragging and releasing a pin doesn't allocate
+    private final PointF mTouchPoint = new PointF();
+    private final PointF mPinPoint = new PointF();
+    private final PointF mPinPointMin = new PointF();
+    private final PointF mPinPointMax = new PointF();
+    private final PinAnimator mFirstPinAnimator = new PinAnimator();
+    private final PinAnimator mSecondPinAnimator = new PinAnimator();
+    private final DragSession mDragSession = new DragSession(new DragSessionBar());
+    private final float[] mDragPoint = new float[2];
+
+    // Recent touch samples of the current drag, historical ones included, in a ring buffer.
+    // Drags are applied from the newest sample once per frame rather than once per event.
+    private final TouchSamples mTouchSamples = new TouchSamples();
+    private final float[] mTouchSamplePoint = new float[2];
+    private boolean mTouchSamplesPending;
+    private boolean mDragFramePosted;
+
+    private final Runnable mDragFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mDragFramePosted = false;
+            mInFrameCallback = true;
+            applyTouchSamples(true);
+            mInFrameCallback = false;
+        }
+    };
+
+    // Touch prediction. Only the drawn position of the dragged pin is extrapolated; its index is
+    // always taken from the real samples, and the pin is put back on them before each drag.
+    private static final long DEFAULT_TOUCH_PREDICTION_MS = 16;
+    private static final long TOUCH_PREDICTION_WINDOW_MS = 50;
+    private boolean mTouchPredictionEnabled;
+    private long mTouchPredictionMillis = DEFAULT_TOUCH_PREDICTION_MS;
+    private OnTouchPredictionListener mOnTouchPredictionListener;
+    private PinView mPredictedPin;
+    private final PointF mPredictedPinPoint = new PointF();
+    private final PointF mRealPinPoint = new PointF();
+    private boolean mHasPrediction;
+    private float mPredictionX;
+    private float mPredictionY;
+    private long mPredictionTime;
+
     /**
      * Some logic ideas came from:
      * https://github.com/android/platform_frameworks_base/blob/master/core/java/android/widget/AbsSeekBar.java#L564
@@ -427,14 +595,15 @@ public abstract class AbsRangeBar extends View {
                 //PbLog.e(TAG, "onTouchEvent: ACTION_DOWN");
                 if (isInScrollingContainer()) {
                     //PbLog.e(TAG, "onTouchEvent: ACTION_DOWN isInScrollingContainer() == true; waiting for slop");
-                    mTouchDown = new PointF(event.getX(), event.getY());
+                    mTouchDown.set(event.getX(), event.getY());
+                    mHasTouchDown = true;
                 } else {
                     //PbLog.e(TAG, "onTouchEvent: ACTION_DOWN isInScrollingContainer() == false; start tracking/processing");
                     setPressed(true);
                     //if (mThumb != null) {
                     //    invalidate(mThumb.getBounds()); // This may be within the padding region
                     //}
-                    invalidate();
+                    scheduleInvalidate();
                     onStartTrackingTouch();
                     trackTouchEvent(event);
                     attemptClaimDrag();
@@ -447,13 +616,13 @@ public abstract class AbsRangeBar extends View {
                     trackTouchEvent(event);
                 } else {
                     final float x = event.getX();
-                    if (mTouchDown != null && Math.abs(x - mTouchDown.x) > mScaledTouchSlop) {
+                    if (mHasTouchDown && Math.abs(x - mTouchDown.x) > mScaledTouchSlop) {
                         //PbLog.e(TAG, "onTouchEvent: ACTION_MOVE mIsTrackingTouch == false; slop exceeded; start tracking/processing");
                         setPressed(true);
                         //if (mThumb != null) {
                         //    invalidate(mThumb.getBounds()); // This may be within the padding region
                         //}
-                        invalidate();
+                        scheduleInvalidate();
                         onStartTrackingTouch();
                         trackTouchEvent(event);
                         attemptClaimDrag();
@@ -475,21 +644,22 @@ public abstract class AbsRangeBar extends View {
                     trackTouchEvent(event);
                     onStopTrackingTouch();
                 }
-                mTouchDown = null;
+                mHasTouchDown = false;
                 // ProgressBar doesn't know to repaint the thumb drawable
                 // in its inactive state when the touch stops (because the
                 // value has not apparently changed)
-                invalidate();
+                scheduleInvalidate();
                 break;
             case MotionEvent.ACTION_CANCEL:
                 //PbLog.e(TAG, "onTouchEvent: ACTION_CANCEL");
                 if (mIsTrackingTouch) {
                     //PbLog.e(TAG, "onTouchEvent: ACTION_CANCEL mIsTrackingTouch == true; stop tracking/processing");
+                    clearTouchSamples();
                     onStopTrackingTouch();
                     setPressed(false);
                 }
-                mTouchDown = null;
-                invalidate(); // see above explanation
+                mHasTouchDown = false;
+                scheduleInvalidate(); // see above explanation
                 break;
         }
         return true;
@@ -533,6 +703,7 @@ public abstract class AbsRangeBar extends View {
     protected void onStartTrackingTouch() {
         //PbLog.e(TAG, "onStartTrackingTouch()");
         mIsTrackingTouch = true;
+        mDragSession.reset();
         if (mOnRangeBarChangeListener != null) {
             mOnRangeBarChangeListener.onStartTrackingTouch(this);
         }
@@ -547,6 +718,7 @@ public abstract class AbsRangeBar extends View {
     protected void onStopTrackingTouch() {
         //PbLog.e(TAG, "onStopTrackingTouch()");
         mIsTrackingTouch = false;
+        mDragSession.reset();
         if (mOnRangeBarChangeListener != null) {
             mOnRangeBarChangeListener.onStopTrackingTouch(this);
         }
@@ -562,6 +734,7 @@ public abstract class AbsRangeBar extends View {
         //PbLog.e(TAG, "trackTouchEvent(event=" + event + ')');
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
+                clearTouchSamples();
                 mDraggingPin = getTargetPinView(event.getX(), event.getY());
                 //PbLog.e(TAG, "trackTouchEvent: ACTION_DOWN mDraggingPin=" + mDraggingPin);
                 if (mDraggingPin != null) {
@@ -569,7 +742,7 @@ public abstract class AbsRangeBar extends View {
                 }
                 break;
             case MotionEvent.ACTION_MOVE:
-                if (mDraggingPin == null && mTouchDown != null) {
+                if (mDraggingPin == null && mHasTouchDown) {
                     mDraggingPin = getTargetPinView(mTouchDown.x, mTouchDown.y);
                     //PbLog.e(TAG, "trackTouchEvent: ACTION_MOVE mDraggingPin=" + mDraggingPin);
                     if (mDraggingPin != null) {
@@ -577,26 +750,22 @@ public abstract class AbsRangeBar extends View {
                     }
                 }
                 if (mDraggingPin != null) {
-                    int nearestTickIndex = getNearestIndex(mDraggingPin);
-                    //PbLog.e(TAG, "trackTouchEvent: ACTION_MOVE nearestTickIndex=" + nearestTickIndex);
-                    PointF point = new PointF(event.getX(), event.getY());
-
-                    int firstPinIndex = -1;
-                    int secondPinIndex = -1;
-                    if (mFirstPinView.equals(mDraggingPin)) {
-                        firstPinIndex = nearestTickIndex;
-                        secondPinIndex = mSecondPinView.getIndex();
-                    } else if (mSecondPinView.equals(mDraggingPin)) {
-                        firstPinIndex = mFirstPinView.getIndex();
-                        secondPinIndex = nearestTickIndex;
-                    }
-
-                    if (firstPinIndex != -1 && secondPinIndex != -1) {
-                        setPinIndices(firstPinIndex, secondPinIndex, mDraggingPin, point);
+                    addTouchSamples(event);
+                    if (!mDragFramePosted) {
+                        mDragFramePosted = true;
+                        postOnAnimation(mDragFrameRunnable);
                     }
                 }
                 break;
             case MotionEvent.ACTION_UP:
+                // Apply the up event along with any samples still waiting for a frame before
+                // snapping, and snap from where the touch really is rather than from a
+                // predicted position
+                if (mDraggingPin != null) {
+                    addTouchSamples(event);
+                }
+                applyTouchSamples(false);
+                restorePredictedPin();
                 if (mDraggingPin != null) {
                     releasePin(mDraggingPin);
                     mDraggingPin = null;
@@ -604,15 +773,137 @@ public abstract class AbsRangeBar extends View {
                 //    // Touch up when we never crossed the touch slop threshold should
                 //    // be interpreted as a tap-seek to that location. But let's not do that now.
                 //}
+                clearTouchSamples();
                 break;
             case MotionEvent.ACTION_CANCEL:
                 if (mDraggingPin != null) {
                     mDraggingPin = null;
                 }
+                clearTouchSamples();
                 break;
         }
     }
 
+    private void addTouchSamples(MotionEvent event) {
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            mTouchSamples.add(event.getHistoricalX(i), event.getHistoricalY(i),
+                    event.getHistoricalEventTime(i));
+        }
+        mTouchSamples.add(event.getX(), event.getY(), event.getEventTime());
+        mTouchSamplesPending = true;
+    }
+
+    private void clearTouchSamples() {
+        restorePredictedPin();
+        mHasPrediction = false;
+        if (mDragFramePosted) {
+            removeCallbacks(mDragFrameRunnable);
+            mDragFramePosted = false;
+        }
+        mTouchSamples.clear();
+        mTouchSamplesPending = false;
+    }
+
+    // Moves the dragged pin to the newest sample; all the samples since the last frame reduce to
+    // that one position, so snapping, clamping and listeners run once per frame
+    private void applyTouchSamples(boolean predict) {
+        if (!mTouchSamplesPending || mDraggingPin == null) {
+            return;
+        }
+        mTouchSamplesPending = false;
+        if (mOnTouchPredictionListener != null && mHasPrediction) {
+            reportTouchPrediction();
+        }
+        mHasPrediction = false;
+
+        restorePredictedPin();
+        dragPin(mTouchSamples.getNewestX(), mTouchSamples.getNewestY());
+
+        if (predict && mTouchPredictionEnabled) {
+            predictPin();
+        }
+    }
+
+    // Extrapolates the touch one prediction interval past the newest sample, from a least-squares
+    // fit of the velocity over the last few samples, and draws the dragged pin there
+    private void predictPin() {
+        if (!mTouchSamples.predict(TOUCH_PREDICTION_WINDOW_MS, mTouchPredictionMillis,
+                mTouchSamplePoint)) {
+            return;
+        }
+        mPredictionX = mTouchSamplePoint[0];
+        mPredictionY = mTouchSamplePoint[1];
+        mPredictionTime = mTouchSamples.getNewestTime() + mTouchPredictionMillis;
+        mHasPrediction = true;
+
+        PointF position = mDraggingPin.getPosition();
+        mRealPinPoint.set(position.x, position.y);
+        bindDragSession(mDraggingPin);
+        mDragSession.clamp(mPredictionX, mPredictionY, mDragPoint);
+        mPredictedPinPoint.set(mDragPoint[0], mDragPoint[1]);
+        movePin(mDraggingPin, mPredictedPinPoint);
+        mPredictedPin = mDraggingPin;
+    }
+
+    // Moves a pin drawn at a predicted position back to the last real one, unless something else
+    // has moved it since
+    private void restorePredictedPin() {
+        if (mPredictedPin == null) {
+            return;
+        }
+        if (mPredictedPin.getPosition().equals(mPredictedPinPoint.x, mPredictedPinPoint.y)) {
+            movePin(mPredictedPin, mRealPinPoint);
+        }
+        mPredictedPin = null;
+    }
+
+    // Compares the last prediction with the touch position at the time it was made for,
+    // interpolated between the real samples around that time
+    private void reportTouchPrediction() {
+        final long newestTime = mTouchSamples.getNewestTime();
+        if (newestTime < mPredictionTime) {
+            // No real sample has caught up with the prediction yet
+            return;
+        }
+
+        mTouchSamples.getPositionAt(mPredictionTime, mTouchSamplePoint);
+        float x = mTouchSamplePoint[0];
+        float y = mTouchSamplePoint[1];
+        float error = (float) Math.hypot(x - mPredictionX, y - mPredictionY);
+        long lag = SystemClock.uptimeMillis() - newestTime;
+        mOnTouchPredictionListener.onTouchPrediction(this, error, lag);
+    }
+
+    private void dragPin(float x, float y) {
+        mTouchPoint.set(x, y);
+        bindDragSession(mDraggingPin);
+        int nearestTickIndex = mDragSession.drag(x, y, mDragPoint);
+        //PbLog.e(TAG, "dragPin: nearestTickIndex=" + nearestTickIndex);
+
+        // A move that stays on the pin's tick only moves the pin; snapping, labels and listeners
+        // are left for moves that cross a tick
+        if (nearestTickIndex == mDraggingPin.getIndex()) {
+            mPinPoint.set(mDragPoint[0], mDragPoint[1]);
+            movePin(mDraggingPin, mPinPoint);
+            return;
+        }
+
+        int firstPinIndex = -1;
+        int secondPinIndex = -1;
+        if (mFirstPinView.equals(mDraggingPin)) {
+            firstPinIndex = nearestTickIndex;
+            secondPinIndex = mSecondPinView.getIndex();
+        } else if (mSecondPinView.equals(mDraggingPin)) {
+            firstPinIndex = mFirstPinView.getIndex();
+            secondPinIndex = nearestTickIndex;
+        }
+
+        if (firstPinIndex != -1 && secondPinIndex != -1) {
+            setPinIndices(firstPinIndex, secondPinIndex, mDraggingPin, mTouchPoint);
+        }
+    }
+
     // Public Methods //////////////////////////////////////////////////////////
 
     /**
@@ -627,13 +918,17 @@ public abstract class AbsRangeBar extends View {
     }
 
     /**
-     * Sets an object to format pin values.
+     * Sets an object to format pin values. Labels are cached by index, so set the formatter again
+     * if the labels it returns change.
      *
      * @param formatter
      */
     public void setIndexFormatter(IndexFormatter formatter) {
         mIndexFormatter = formatter;
-        invalidate();
+        resetLabelCache();
+        updateFixedWidthLabel();
+        invalidateAxisLabels();
+        scheduleInvalidate();
     }
 
     /**
@@ -643,7 +938,7 @@ public abstract class AbsRangeBar extends View {
      */
     public void enableDrawTicks(boolean enable) {
         mDrawTicks = enable;
-        invalidate();
+        invalidateStaticLayer();
     }
 
     /**
@@ -672,6 +967,9 @@ public abstract class AbsRangeBar extends View {
         validateTickCount(tickCount);
 
         mTickCount = tickCount;
+        updateTickPoints();
+        resetLabelCache();
+        updateFixedWidthLabel();
 
         boolean changed = false;
 
@@ -697,7 +995,7 @@ public abstract class AbsRangeBar extends View {
             setPinIndices(firstIndex, secondIndex, null, null);
         }
 
-        invalidate();
+        invalidateStaticLayer();
     }
 
     /**
@@ -707,7 +1005,35 @@ public abstract class AbsRangeBar extends View {
      */
     public void setTickHeight(float size) {
         mTickSize = size;
-        invalidate();
+        mTickPaint.setStrokeWidth(mTickSize * 2);
+        updateBarSpanInset();
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Sets the minimum distance between two drawn ticks. When the ticks are packed closer than
+     * this, only every n-th tick is drawn as a minor tick, with the n chosen from 1, 2, 5, 10,
+     * 20, 50... so that the drawn ticks are at least this far apart.
+     *
+     * @param spacing float specifying the minimum tick spacing in px.
+     */
+    public void setMinTickSpacing(float spacing) {
+        mMinTickSpacing = spacing;
+        updateTickLevelOfDetail();
+        invalidateStaticLayer();
+    }
+
+    /**
+     * Sets the minimum distance between two major ticks. Major ticks are only drawn (larger than
+     * the minor ticks) when the ticks are too dense to all be drawn; see
+     * {@link #setMinTickSpacing(float)}.
+     *
+     * @param spacing float specifying the minimum major tick spacing in px.
+     */
+    public void setMajorTickSpacing(float spacing) {
+        mMajorTickSpacing = spacing;
+        updateTickLevelOfDetail();
+        invalidateStaticLayer();
     }
 
     /**
@@ -719,7 +1045,8 @@ public abstract class AbsRangeBar extends View {
     public void setBarWeight(float barWeight) {
         mBarWeight = barWeight;
         mBarPaint.setStrokeWidth(mBarWeight);
-        invalidate();
+        updateBarSpanInset();
+        scheduleInvalidate();
     }
 
     /**
@@ -728,9 +1055,12 @@ public abstract class AbsRangeBar extends View {
      * @param barColor Integer specifying the color of the bar line.
      */
     public void setBarColor(int barColor) {
-        mBarColor = barColor;
-        mBarPaint.setColor(mBarColor);
-        invalidate();
+        mActiveBarColor = barColor;
+        if (isEnabled()) {
+            mBarColor = barColor;
+            mBarPaint.setColor(mBarColor);
+            scheduleInvalidate();
+        }
     }
 
     /**
@@ -750,7 +1080,7 @@ public abstract class AbsRangeBar extends View {
     protected void setFirstPinColor(int pinColor, boolean invalidate) {
         mFirstPinColor = pinColor;
         if (invalidate) {
-            initPins(false);
+            applyPinColors();
         }
     }
 
@@ -761,7 +1091,7 @@ public abstract class AbsRangeBar extends View {
     protected void setSecondPinColor(int pinColor, boolean invalidate) {
         mSecondPinColor = pinColor;
         if (invalidate) {
-            initPins(false);
+            applyPinColors();
         }
     }
 
@@ -782,7 +1112,7 @@ public abstract class AbsRangeBar extends View {
     protected void setFirstPinTextColor(int textColor, boolean invalidate) {
         mFirstPinTextColor = textColor;
         if (invalidate) {
-            initPins(false);
+            applyPinColors();
         }
     }
 
@@ -793,7 +1123,7 @@ public abstract class AbsRangeBar extends View {
     protected void setSecondPinTextColor(int textColor, boolean invalidate) {
         mSecondPinTextColor = textColor;
         if (invalidate) {
-            initPins(false);
+            applyPinColors();
         }
     }
 
@@ -813,7 +1143,7 @@ public abstract class AbsRangeBar extends View {
      */
     public void setRangeBarEnabled(boolean isRangeBar) {
         mIsRangeBar = isRangeBar;
-        invalidate();
+        scheduleInvalidate();
     }
 
     /**
@@ -824,7 +1154,7 @@ public abstract class AbsRangeBar extends View {
      */
     public void setTemporaryPins(boolean arePinsTemporary) {
         mArePinsTemporary = arePinsTemporary;
-        invalidate();
+        scheduleInvalidate();
     }
 
     /**
@@ -833,9 +1163,13 @@ public abstract class AbsRangeBar extends View {
      * @param tickColor Integer specifying the color of the ticks.
      */
     public void setTickColor(int tickColor) {
-        mTickColor = tickColor;
-        mTickPaint.setColor(mTickColor);
-        invalidate();
+        mActiveTickColor = tickColor;
+        if (isEnabled()) {
+            mTickColor = tickColor;
+            mTickPaint.setColor(mTickColor);
+            mAxisLabelPaint.setColor(mTickColor);
+            invalidateStaticLayer();
+        }
     }
 
     /**
@@ -853,9 +1187,12 @@ public abstract class AbsRangeBar extends View {
     }
 
     protected void setFirstSelectorColor(int selectorColor, boolean invalidate) {
-        mFirstSelectorColor = selectorColor;
+        mActiveFirstCircleColor = selectorColor;
+        if (isEnabled()) {
+            mFirstSelectorColor = selectorColor;
+        }
         if (invalidate) {
-            initPins(false);
+            applyPinColors();
         }
     }
 
@@ -864,9 +1201,12 @@ public abstract class AbsRangeBar extends View {
     }
 
     protected void setSecondSelectorColor(int selectorColor, boolean invalidate) {
-        mSecondSelectorColor = selectorColor;
+        mActiveSecondCircleColor = selectorColor;
+        if (isEnabled()) {
+            mSecondSelectorColor = selectorColor;
+        }
         if (invalidate) {
-            initPins(false);
+            applyPinColors();
         }
     }
 
@@ -880,7 +1220,8 @@ public abstract class AbsRangeBar extends View {
         mConnectingLineWeight = connectingLineWeight;
         mFirstConnectingLinePaint.setStrokeWidth(mConnectingLineWeight);
         mSecondConnectingLinePaint.setStrokeWidth(mConnectingLineWeight);
-        invalidate();
+        updateBarSpanInset();
+        scheduleInvalidate();
     }
 
     /**
@@ -899,10 +1240,13 @@ public abstract class AbsRangeBar extends View {
     }
 
     protected void setFirstConnectingLineColor(int connectingLineColor, boolean invalidate) {
-        mFirstConnectingLineColor = connectingLineColor;
-        mFirstConnectingLinePaint.setColor(mFirstConnectingLineColor);
+        mActiveFirstConnectingLineColor = connectingLineColor;
+        if (isEnabled()) {
+            mFirstConnectingLineColor = connectingLineColor;
+            mFirstConnectingLinePaint.setColor(mFirstConnectingLineColor);
+        }
         if (invalidate) {
-            invalidate();
+            scheduleInvalidate();
         }
     }
 
@@ -911,11 +1255,42 @@ public abstract class AbsRangeBar extends View {
     }
 
     protected void setSecondConnectingLineColor(int connectingLineColor, boolean invalidate) {
-        mSecondConnectingLineColor = connectingLineColor;
-        mSecondConnectingLinePaint.setColor(mSecondConnectingLineColor);
+        mActiveSecondConnectingLineColor = connectingLineColor;
+        if (isEnabled()) {
+            mSecondConnectingLineColor = connectingLineColor;
+            mSecondConnectingLinePaint.setColor(mSecondConnectingLineColor);
+        }
         if (invalidate) {
-            invalidate();
+            scheduleInvalidate();
+        }
+    }
+
+    /**
+     * Colors the connecting line along a color ramp across the whole value range, instead of with
+     * the flat first and second connecting line colors. The ramp is drawn with a shader that is
+     * built once per ramp; size changes only update its local matrix. The alpha of the connecting
+     * line colors still applies. The ramp is not drawn while the bar is disabled.
+     *
+     * @param colors    the colors of the ramp, from the first tick to the last; null to go back
+     *                  to flat colors
+     * @param positions the relative position of each color, from 0 to 1, or null to space the
+     *                  colors evenly
+     */
+    public void setConnectingLineColorRamp(int[] colors, float[] positions) {
+        if (colors == null) {
+            mConnectingLineShader = null;
+        } else {
+            if (colors.length < 2) {
+                throw new IllegalArgumentException("needs at least 2 colors");
+            }
+            if (positions != null && positions.length != colors.length) {
+                throw new IllegalArgumentException("colors and positions must be the same length");
+            }
+            mConnectingLineShader = createColorRampShader(colors, positions);
+            updateColorRampMatrix();
         }
+        applyConnectingLineShader(isEnabled());
+        scheduleInvalidate();
     }
 
     /**
@@ -957,7 +1332,7 @@ public abstract class AbsRangeBar extends View {
             return false;
         }
 
-        PointF pointIndex = new PointF();
+        PointF pointIndex = mPinPoint;
         if (point == null) {
             getPointOfIndex(index, pointIndex);
         } else {
@@ -967,43 +1342,58 @@ public abstract class AbsRangeBar extends View {
 
         int indexMin;
         int indexMax;
-        if (mFirstPinView.equals(pinView)) {
-            indexMin = 0;
-            indexMax = mSecondPinView.getIndex() - 1;
-        } else if (mSecondPinView.equals(pinView)) {
-            indexMin = mFirstPinView.getIndex() + 1;
-            indexMax = mTickCount - 1;
+        PointF pointMin;
+        PointF pointMax;
+        if (isDragSessionFor(pinView)) {
+            // Dragged pin; its range was worked out when the drag started
+            indexMin = mDragSession.getIndexMin();
+            indexMax = mDragSession.getIndexMax();
+            pointMin = mPinPointMin;
+            mDragSession.getPointMin(mDragPoint);
+            pointMin.set(mDragPoint[0], mDragPoint[1]);
+            pointMax = mPinPointMax;
+            mDragSession.getPointMax(mDragPoint);
+            pointMax.set(mDragPoint[0], mDragPoint[1]);
         } else {
-            //PbLog.e(TAG, "setPinIndex: pinView != mFirstPinView || pinView != mSecondPinView; ignoring");
-            return false;
+            if (mFirstPinView.equals(pinView)) {
+                indexMin = 0;
+                indexMax = mSecondPinView.getIndex() - 1;
+            } else if (mSecondPinView.equals(pinView)) {
+                indexMin = mFirstPinView.getIndex() + 1;
+                indexMax = mTickCount - 1;
+            } else {
+                //PbLog.e(TAG, "setPinIndex: pinView != mFirstPinView || pinView != mSecondPinView; ignoring");
+                return false;
+            }
+
+            pointMin = mPinPointMin;
+            getPointOfIndex(indexMin, pointMin);
+            pointMax = mPinPointMax;
+            getPointOfIndex(indexMax, pointMax);
         }
 
         //PbLog.e(TAG, "setPinIndex: indexMin=" + indexMin);
         //PbLog.e(TAG, "setPinIndex: indexMax=" + indexMax);
-
-        PointF pointMin = new PointF();
-        getPointOfIndex(indexMin, pointMin);
         //PbLog.e(TAG, "setPinIndex: pointMin=" + pointMin);
-        PointF pointMax = new PointF();
-        getPointOfIndex(indexMax, pointMax);
         //PbLog.e(TAG, "setPinIndex: pointMax=" + pointMax);
 
-        boolean changed = false;
         if (comparePointsOnBar(pointMin, pointIndex) > 0) {
             pointIndex = pointMin;
             index = indexMin;
         } else if (comparePointsOnBar(pointIndex, pointMax) > 0) {
             pointIndex = pointMax;
             index = indexMax;
-        } else {
-            changed = pinView.setIndex(index);
         }
+        // A clamped pin takes the index it was clamped to, so that it matches its label
+        boolean changed = pinView.setIndex(index);
         //PbLog.e(TAG, "setPinIndex: changed=" + changed);
 
         movePin(pinView, pointIndex);
 
         String label = getPinLabel(index);
-        pinView.setLabel(label);
+        if (pinView.setLabel(label)) {
+            invalidatePin(pinView);
+        }
 
         return changed;
     }
@@ -1018,8 +1408,6 @@ public abstract class AbsRangeBar extends View {
         changed |= setPinIndex(mFirstPinView, firstPinIndex, mFirstPinView.equals(draggingPin) ? point : null);
 
         if (changed) {
-            postInvalidate();
-
             boolean fromUser = draggingPin != null;
             refreshPinIndexes(mFirstPinView.getIndex(), mSecondPinView.getIndex(), fromUser);
         }
@@ -1054,10 +1442,22 @@ public abstract class AbsRangeBar extends View {
             removeCallbacks(mRefreshProgressRunnable);
             mRefreshIsPosted = false;
         }
+        clearTouchSamples();
+        if (mFrameTimeCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(mFrameTimeCallback);
+            mFrameTimeCallbackPosted = false;
+        }
+        mLastFrameTimeNanos = 0;
+        // The whole view is drawn again when it is attached
+        mInvalidateRequested = false;
         // This should come after stopAnimation(), otherwise an invalidate message remains in the
         // queue, which can prevent the entire view hierarchy from being GC'ed during a rotation
         super.onDetachedFromWindow();
         mAttached = false;
+        mFirstPinView.releaseSprite();
+        mSecondPinView.releaseSprite();
+        mFirstPinView.releaseGlyphAtlas();
+        mSecondPinView.releaseGlyphAtlas();
     }
 
     private class RefreshProgressRunnable implements Runnable {
@@ -1121,7 +1521,6 @@ public abstract class AbsRangeBar extends View {
 
     protected void doRefreshPinIndexes(int firstPinIndex, int secondPinIndex, boolean fromUser, boolean callBackToApp) {
         synchronized (AbsRangeBar.this) {
-            invalidate();
             if (callBackToApp) {
                 onRefreshPinIndexes(firstPinIndex, secondPinIndex, fromUser);
             }
@@ -1160,22 +1559,231 @@ public abstract class AbsRangeBar extends View {
         mBarPaint.setColor(mBarColor);
         mBarPaint.setStrokeWidth(mBarWeight);
         mTickPaint.setColor(mTickColor);
+        mTickPaint.setStrokeWidth(mTickSize * 2);
+        mAxisLabelPaint.setColor(mTickColor);
         mFirstConnectingLinePaint.setColor(mFirstConnectingLineColor);
         mFirstConnectingLinePaint.setStrokeWidth(mConnectingLineWeight);
         mSecondConnectingLinePaint.setColor(mSecondConnectingLineColor);
         mSecondConnectingLinePaint.setStrokeWidth(mConnectingLineWeight);
+        applyConnectingLineShader(enabled);
+        invalidateStaticLayer();
 
-        initPins(false);
+        applyPinColors();
 
         super.setEnabled(enabled);
     }
 
+    /**
+     * Enables or disables sizing the pin text once for the widest label of the whole range,
+     * instead of for each label. The text size then no longer jumps while dragging between labels
+     * of different lengths, and labels aren't measured on every move. Ranges of more than a few
+     * hundred ticks are sampled rather than measured label by label.
+     *
+     * @param enabled true to use a single text size for all labels
+     */
+    public void setFixedWidthLabelsEnabled(boolean enabled) {
+        if (mFixedWidthLabels != enabled) {
+            mFixedWidthLabels = enabled;
+            if (enabled) {
+                updateFixedWidthLabel();
+            } else {
+                mFirstPinView.setFixedWidthLabel(null);
+                mSecondPinView.setFixedWidthLabel(null);
+            }
+            scheduleInvalidate();
+        }
+    }
+
+    /**
+     * Enables or disables value labels next to the ticks, drawn with the {@link IndexFormatter}.
+     * Only as many labels as fit without overlapping are drawn, evenly spread over the ticks and
+     * including the first and last tick whenever there is room. The layout is worked out once
+     * per size, tick count and formatter, and drawn into the cached tick layer. Labels go below a
+     * horizontal bar, which makes room for them, and inside an arc.
+     *
+     * @param enabled true to draw axis labels
+     */
+    public void setAxisLabelsEnabled(boolean enabled) {
+        if (mDrawAxisLabels != enabled) {
+            mDrawAxisLabels = enabled;
+            invalidateStaticLayer();
+            onAxisLabelsHeightChanged();
+        }
+    }
+
+    /**
+     * Sets the text size of the axis labels.
+     *
+     * @param textSize the text size, in pixels
+     */
+    public void setAxisLabelTextSize(float textSize) {
+        mAxisLabelTextSize = textSize;
+        mAxisLabelPaint.setTextSize(mAxisLabelTextSize);
+        invalidateAxisLabels();
+        if (mDrawAxisLabels) {
+            onAxisLabelsHeightChanged();
+        }
+    }
+
+    /**
+     * Enables or disables drawing the pins from a bitmap of the fully expanded pin, so that the
+     * press/release animation frames just scale that bitmap instead of re-rendering the pin.
+     * The label is drawn on top of it, so label changes while dragging don't re-render it.
+     *
+     * @param enabled true to enable the pin sprite cache
+     */
+    public void setPinSpriteCacheEnabled(boolean enabled) {
+        mPinSpriteCacheEnabled = enabled;
+        applyPinCaches();
+        scheduleInvalidate();
+    }
+
+    /**
+     * Enables or disables drawing numeric pin labels from a pre-rasterized glyph atlas instead
+     * of shaping the text on every frame. See {@link GlyphAtlas}.
+     *
+     * @param enabled true to draw pin labels from the glyph atlas
+     */
+    public void setGlyphAtlasLabelsEnabled(boolean enabled) {
+        mGlyphAtlasLabelsEnabled = enabled;
+        applyPinCaches();
+        scheduleInvalidate();
+    }
+
+    /**
+     * Sets a budget for the time between frames while the bar is redrawn frame after frame, as
+     * seen by {@link Choreographer} frame callbacks. When the average frame time goes over the
+     * budget, which means frames are being dropped, rendering quality is stepped down one level
+     * at a time (see {@link #RENDER_QUALITY_MEDIUM} and {@link #RENDER_QUALITY_LOW}); it is
+     * stepped back up once the average is under three quarters of the budget. About one and a
+     * half times the display's frame interval works well, e.g. 25 ms at 60 Hz.
+     *
+     * @param budgetNanos the frame time budget in nanoseconds, or 0 to always render at full
+     *                    quality (the default)
+     */
+    public void setFrameTimeBudget(long budgetNanos) {
+        mFrameBudgetNanos = Math.max(0, budgetNanos);
+        mAverageFrameNanos = 0;
+        mLastFrameTimeNanos = 0;
+        mFramesSinceQualityChange = 0;
+        if (mFrameBudgetNanos == 0 && mRenderQuality != RENDER_QUALITY_HIGH) {
+            setRenderQuality(RENDER_QUALITY_HIGH);
+        }
+    }
+
+    /**
+     * Enables or disables touch prediction. While a pin is dragged, it is drawn where the touch
+     * is expected to be one frame later, extrapolated from the velocity of the recent touch
+     * samples, which hides some of the latency between the finger and the pin. The index of the
+     * pin, and so the labels and listener callbacks, still come from the real touch samples only.
+     *
+     * @param enabled true to draw the dragged pin at the predicted touch position
+     */
+    public void setTouchPredictionEnabled(boolean enabled) {
+        mTouchPredictionEnabled = enabled;
+        if (!enabled) {
+            restorePredictedPin();
+            mHasPrediction = false;
+        }
+    }
+
+    public boolean isTouchPredictionEnabled() {
+        return mTouchPredictionEnabled;
+    }
+
+    /**
+     * Sets how far ahead of the newest touch sample the dragged pin is predicted. This should be
+     * about the time from a touch event to the frame it shows up in; one frame by default.
+     *
+     * @param millis the prediction interval in milliseconds
+     */
+    public void setTouchPredictionInterval(long millis) {
+        mTouchPredictionMillis = Math.max(0, millis);
+    }
+
+    /**
+     * Sets a listener to receive the error and lag of touch prediction while a pin is dragged.
+     *
+     * @param listener the listener; null to remove any existing listener
+     */
+    public void setOnTouchPredictionListener(OnTouchPredictionListener listener) {
+        mOnTouchPredictionListener = listener;
+    }
+
+    /**
+     * @return the current render quality, one of {@link #RENDER_QUALITY_HIGH},
+     * {@link #RENDER_QUALITY_MEDIUM} or {@link #RENDER_QUALITY_LOW}
+     */
+    public int getRenderQuality() {
+        return mRenderQuality;
+    }
+
     public void setConnectingLineInverted(boolean connectingLineInverted) {
         mConnectingLineInverted = connectingLineInverted;
     }
 
     // Private Methods /////////////////////////////////////////////////////////
 
+    // Pushes the current colors to the pins without re-initializing them
+    private void applyPinColors() {
+        mFirstPinView.setColors(mFirstPinColor, mFirstPinTextColor, mFirstSelectorColor);
+        mSecondPinView.setColors(mSecondPinColor, mSecondPinTextColor, mSecondSelectorColor);
+        scheduleInvalidate();
+    }
+
+    private void applyPinCaches() {
+        boolean spriteCache = mPinSpriteCacheEnabled || mRenderQuality >= RENDER_QUALITY_MEDIUM;
+        mFirstPinView.setSpriteCacheEnabled(spriteCache);
+        mSecondPinView.setSpriteCacheEnabled(spriteCache);
+
+        mFirstPinView.setGlyphAtlasEnabled(mGlyphAtlasLabelsEnabled);
+        mSecondPinView.setGlyphAtlasEnabled(mGlyphAtlasLabelsEnabled);
+    }
+
+    private void updateRenderQuality(long frameNanos) {
+        // Moving average over roughly the last 8 frames
+        if (mAverageFrameNanos == 0) {
+            mAverageFrameNanos = frameNanos;
+        } else {
+            mAverageFrameNanos += (frameNanos - mAverageFrameNanos) / 8;
+        }
+
+        if (++mFramesSinceQualityChange < RENDER_QUALITY_SETTLE_FRAMES) {
+            return;
+        }
+        if (mAverageFrameNanos > mFrameBudgetNanos && mRenderQuality < RENDER_QUALITY_LOW) {
+            setRenderQuality(mRenderQuality + 1);
+        } else if (mAverageFrameNanos < mFrameBudgetNanos * 3 / 4 &&
+                mRenderQuality > RENDER_QUALITY_HIGH) {
+            setRenderQuality(mRenderQuality - 1);
+        }
+    }
+
+    private void setRenderQuality(int quality) {
+        mRenderQuality = quality;
+        mAverageFrameNanos = 0;
+        mFramesSinceQualityChange = 0;
+        onRenderQualityChanged(quality);
+    }
+
+    /**
+     * Called when the adaptive render quality changes, to apply the new quality. Subclasses can
+     * override this to trade their own drawing quality for speed, but must call through to super.
+     *
+     * @param quality one of {@link #RENDER_QUALITY_HIGH}, {@link #RENDER_QUALITY_MEDIUM} or
+     *                {@link #RENDER_QUALITY_LOW}
+     * @see #setFrameTimeBudget(long)
+     */
+    protected void onRenderQualityChanged(int quality) {
+        mTickPaint.setAntiAlias(quality == RENDER_QUALITY_HIGH);
+        mAxisLabelPaint.setAntiAlias(quality != RENDER_QUALITY_LOW);
+        if (mTickPointsValid) {
+            updateTickLevelOfDetail();
+        }
+        applyPinCaches();
+        invalidateStaticLayer();
+    }
+
     /**
      * Initializes (and creates if necessary) the one or two Pins.
      */
@@ -1197,20 +1805,21 @@ public abstract class AbsRangeBar extends View {
             }
         }
 
-        invalidate();
+        scheduleInvalidate();
     }
 
     private void initPin(PinView pinView, int pinColor, int pinTextColor, int pinSelectorColor) {
 
         int pinIndex = pinView.getIndex();
 
-        PointF pinPoint = new PointF();
+        PointF pinPoint = mPinPoint;
         getPointOfIndex(pinIndex, pinPoint);
 
         pinView.init(pinPoint,
                 0, pinColor, pinTextColor,
                 mSelectorSize, pinSelectorColor,
                 mMinPinFont, mMaxPinFont);
+        pinView.setExpandedRadius(mExpandedPinRadius);
 
         pinView.setLabel(getPinLabel(pinIndex));
     }
@@ -1237,16 +1846,7 @@ public abstract class AbsRangeBar extends View {
      */
     private void pressPin(final PinView thumb) {
         if (mArePinsTemporary) {
-            ValueAnimator animator = ValueAnimator.ofFloat(0, mExpandedPinRadius);
-            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    mPinRadius = (Float) animation.getAnimatedValue();
-                    thumb.setSize(mPinRadius, mPinPadding * animation.getAnimatedFraction());
-                    invalidate();
-                }
-            });
-            animator.start();
+            getPinAnimator(thumb).start(thumb, true);
             thumb.press();
         } else {
             thumb.setSize(mExpandedPinRadius, mPinPadding);
@@ -1260,67 +1860,313 @@ public abstract class AbsRangeBar extends View {
      * @param pinView the thumb to release
      */
     private void releasePin(final PinView pinView) {
-        PointF point = new PointF();
+        PointF point = mPinPoint;
         getNearestIndexPosition(pinView.getPosition(), point);
-        pinView.setPosition(point);
+        movePin(pinView, point);
         int tickIndex = getNearestIndex(pinView);
 
-        pinView.setLabel(getPinLabel(tickIndex));
+        if (pinView.setLabel(getPinLabel(tickIndex))) {
+            invalidatePin(pinView);
+        }
 
         if (mArePinsTemporary) {
-            ValueAnimator animator = ValueAnimator.ofFloat(mExpandedPinRadius, 0);
-            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    mPinRadius = (Float) (animation.getAnimatedValue());
-                    pinView.setSize(mPinRadius,
-                            mPinPadding - (mPinPadding * animation.getAnimatedFraction()));
-                    invalidate();
-                }
-            });
-            animator.start();
+            getPinAnimator(pinView).start(pinView, false);
             pinView.release();
-        } else {
-            invalidate();
         }
     }
 
+    private PinAnimator getPinAnimator(PinView pinView) {
+        return pinView == mFirstPinView ? mFirstPinAnimator : mSecondPinAnimator;
+    }
+
+    /**
+     * Expands or collapses a pin. One is kept per pin and its animator is reused, so pressing
+     * and releasing doesn't allocate animators and listeners every time.
+     */
+    private class PinAnimator implements ValueAnimator.AnimatorUpdateListener {
+        private ValueAnimator mAnimator;
+        private PinView mPinView;
+        private boolean mExpanding;
+
+        void start(PinView pinView, boolean expanding) {
+            if (mAnimator == null) {
+                mAnimator = ValueAnimator.ofFloat(0f, 1f);
+                mAnimator.addUpdateListener(this);
+            } else {
+                mAnimator.cancel();
+            }
+            mPinView = pinView;
+            mExpanding = expanding;
+            mAnimator.start();
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            // Work from the fraction rather than the boxed animated value
+            float fraction = animation.getAnimatedFraction();
+            if (!mExpanding) {
+                fraction = 1f - fraction;
+            }
+            mPinRadius = mExpandedPinRadius * fraction;
+            mInFrameCallback = true;
+            resizePin(mPinView, mPinRadius, mPinPadding * fraction);
+            mInFrameCallback = false;
+        }
+    }
+
+    private PinView getOtherPin(PinView pinView) {
+        return mFirstPinView.equals(pinView) ? mSecondPinView : mFirstPinView;
+    }
+
+    private boolean isDragSessionFor(PinView pinView) {
+        return mDragSession.isFor(mFirstPinView.equals(pinView), getOtherPin(pinView).getIndex());
+    }
+
+    private void bindDragSession(PinView pinView) {
+        mDragSession.bind(mFirstPinView.equals(pinView), getOtherPin(pinView).getIndex());
+    }
+
+    // The geometry of this bar for the drag session, in plain coordinates
+    private class DragSessionBar implements DragSession.Bar {
+        private final PointF mPoint1 = new PointF();
+        private final PointF mPoint2 = new PointF();
+
+        @Override
+        public int getTickCount() {
+            return mTickCount;
+        }
+
+        @Override
+        public void getPointOfIndex(int index, float[] pointOut) {
+            AbsRangeBar.this.getPointOfIndex(index, mPoint1);
+            pointOut[0] = mPoint1.x;
+            pointOut[1] = mPoint1.y;
+        }
+
+        @Override
+        public void getNearestPointOnBar(float x, float y, float[] pointOut) {
+            mPoint1.set(x, y);
+            AbsRangeBar.this.getNearestPointOnBar(mPoint1, mPoint2);
+            pointOut[0] = mPoint2.x;
+            pointOut[1] = mPoint2.y;
+        }
+
+        @Override
+        public int comparePointsOnBar(float x1, float y1, float x2, float y2) {
+            mPoint1.set(x1, y1);
+            mPoint2.set(x2, y2);
+            return AbsRangeBar.this.comparePointsOnBar(mPoint1, mPoint2);
+        }
+
+        @Override
+        public int getNearestIndex(float x, float y) {
+            mPoint1.set(x, y);
+            return AbsRangeBar.this.getNearestIndex(mPoint1);
+        }
+    }
+
+    private void updateFixedWidthLabel() {
+        if (!mFixedWidthLabels) {
+            return;
+        }
+        if (mLabelMeasurePaint == null) {
+            mLabelMeasurePaint = new Paint();
+            PinView.initLabelPaint(mLabelMeasurePaint);
+        }
+        String widestLabel = findWidestLabel(mLabelMeasurePaint);
+        mFirstPinView.setFixedWidthLabel(widestLabel);
+        mSecondPinView.setFixedWidthLabel(widestLabel);
+    }
+
+    private String findWidestLabel(Paint paint) {
+        final int samples = Math.min(mTickCount, MAX_MEASURED_LABELS);
+        String widestLabel = null;
+        float widestWidth = -1f;
+        for (int i = 0; i < samples; i++) {
+            // Evenly spaced indexes, always including the first and the last
+            int index = samples == mTickCount ? i : (int) ((long) i * (mTickCount - 1) / (samples - 1));
+            String label = getPinLabel(index);
+            if (label != null) {
+                float width = paint.measureText(label);
+                if (width > widestWidth) {
+                    widestWidth = width;
+                    widestLabel = label;
+                }
+            }
+        }
+        return widestLabel;
+    }
+
     /**
      * Calculates the value for the tickmark at index n.
      *
      * @param tickIndex the index to get the value for
      */
     public String getPinLabel(int tickIndex) {
+        final String[] cache = mLabelCache;
+        if (cache == null || tickIndex < 0 || tickIndex >= cache.length) {
+            return formatLabel(tickIndex);
+        }
+        String label = cache[tickIndex];
+        if (label == null) {
+            label = formatLabel(tickIndex);
+            cache[tickIndex] = label;
+        }
+        return label;
+    }
+
+    private String formatLabel(int tickIndex) {
         if (mIndexFormatter == null) {
             return Integer.toString(tickIndex);
         }
         return mIndexFormatter.getLabel(tickIndex);
     }
 
+    private void resetLabelCache() {
+        if (mTickCount > MAX_CACHED_LABELS) {
+            mLabelCache = null;
+        } else if (mLabelCache == null || mLabelCache.length != mTickCount) {
+            mLabelCache = new String[mTickCount];
+        } else {
+            Arrays.fill(mLabelCache, null);
+        }
+    }
+
     /**
-     * Moves the thumb to the given x-coordinate.
+     * Moves the thumb to the given x-coordinate, invalidating only the area of the old and new
+     * pin and the part of the bar in between.
      *
      * @param pinView the PinView to move
      * @param point   the point to move the PinView to
      */
     private void movePin(PinView pinView, PointF point) {
         //PbLog.e(TAG, "movePin(pinView=" + pinView + ", point=" + point + ')');
-        if (pinView.getPosition().equals(point)) {
+        PointF position = pinView.getPosition();
+        if (position.equals(point.x, point.y)) {
             return;
         }
 
+        pinView.getDrawBounds(mDirtyBounds);
+        getBarSpanBounds(position, point, mDirtyBoundsTemp);
+        mDirtyBoundsTemp.inset(-mBarSpanInset, -mBarSpanInset);
+        mDirtyBounds.union(mDirtyBoundsTemp);
+
         pinView.setPosition(point);
-        invalidate();
+
+        pinView.getDrawBounds(mDirtyBoundsTemp);
+        mDirtyBounds.union(mDirtyBoundsTemp);
+        invalidate(mDirtyBounds);
+    }
+
+    /**
+     * Resizes the pin, invalidating only the union of its old and new area.
+     */
+    private void resizePin(PinView pinView, float size, float padding) {
+        pinView.getDrawBounds(mDirtyBounds);
+        pinView.setSize(size, padding);
+        pinView.getDrawBounds(mDirtyBoundsTemp);
+        mDirtyBounds.union(mDirtyBoundsTemp);
+        invalidate(mDirtyBounds);
+    }
+
+    private void invalidatePin(PinView pinView) {
+        pinView.getDrawBounds(mDirtyBounds);
+        invalidate(mDirtyBounds);
+    }
+
+    private void invalidate(RectF bounds) {
+        bounds.roundOut(mDirtyRect);
+        if (mUiThreadId != Thread.currentThread().getId()) {
+            postInvalidate(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+            return;
+        }
+        countInvalidate();
+        if (mInFrameCallback) {
+            invalidate(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right, mDirtyRect.bottom);
+        } else {
+            postInvalidateOnAnimation(mDirtyRect.left, mDirtyRect.top, mDirtyRect.right,
+                    mDirtyRect.bottom);
+        }
+    }
+
+    /**
+     * Requests a redraw of the whole view. From a frame callback the view is invalidated right
+     * away so that the redraw makes the current frame; otherwise it is invalidated on the next
+     * animation frame. Either way, the view merges all the areas invalidated before it draws.
+     */
+    protected void scheduleInvalidate() {
+        if (mUiThreadId != Thread.currentThread().getId()) {
+            postInvalidate();
+            return;
+        }
+        countInvalidate();
+        if (mInFrameCallback) {
+            invalidate();
+        } else {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    /**
+     * @return the number of redraw requests that were merged into a redraw that was already
+     * pending, since the view was created
+     */
+    public int getSuppressedInvalidateCount() {
+        return mSuppressedInvalidateCount;
+    }
+
+    private void countInvalidate() {
+        if (mInvalidateRequested) {
+            mSuppressedInvalidateCount++;
+        } else {
+            mInvalidateRequested = true;
+        }
     }
 
     // Bar Implementation ///////////////////////////////////////////////////
 
     protected Paint mBarPaint;
     protected Paint mTickPaint;
+    protected Paint mAxisLabelPaint;
     protected Paint mFirstConnectingLinePaint;
     protected Paint mSecondConnectingLinePaint;
 
+    // Axis label layout, rebuilt when the ticks, labels or text size change
+    private boolean mAxisLabelsValid;
+    private int mAxisLabelCount;
+    private String[] mAxisLabels = new String[0];
+    private float[] mAxisLabelPoints = new float[0];
+    private final PointF mAxisLabelCenter = new PointF();
+    private final RectF mAxisLabelBounds = new RectF();
+    private final RectF mAxisLabelPreviousBounds = new RectF();
+    private final RectF mAxisLabelFirstBounds = new RectF();
+    // Area covered by all of the laid out labels
+    private final RectF mAxisLabelExtent = new RectF();
+
+    // Shader for a color ramp along the connecting line, or null for flat colors
+    private Shader mConnectingLineShader;
+    private final Matrix mConnectingLineShaderMatrix = new Matrix();
+
+    // Offscreen copy of the ticks and axis labels; these only change with geometry, tick count or
+    // colors, so pin drags just blit this instead of redrawing every tick. It only covers the
+    // area of the ticks and labels, and is kept while the view is detached so that a recycled
+    // view of the same size doesn't allocate it again.
+    private Bitmap mStaticLayer;
+    private Canvas mStaticLayerCanvas;
+    private boolean mStaticLayerDirty = true;
+    private final Rect mStaticLayerBounds = new Rect();
+    private final Rect mStaticLayerSrc = new Rect();
+    private final RectF mStaticLayerExtent = new RectF();
+
+    // Interleaved x/y coordinates of every tick, shared by drawing, snapping and hit-testing
+    private float[] mTickPoints = new float[0];
+    private boolean mTickPointsValid;
+    private final PointF mTickPointTemp = new PointF();
+
+    // Level of detail: when the ticks are denser than mMinTickSpacing only a subset of them is
+    // drawn, split into minor and major ticks
+    private final TickLevelOfDetail mTickLevelOfDetail = new TickLevelOfDetail();
+
     protected void initBar() {
         // Initialize the paint.
         mBarPaint = new Paint();
@@ -1329,9 +2175,19 @@ public abstract class AbsRangeBar extends View {
         mBarPaint.setColor(mBarColor);
         mBarPaint.setStrokeWidth(mBarWeight);
 
+        // Ticks are drawn as round-capped points, so the stroke width is the tick diameter
         mTickPaint = new Paint();
-        mTickPaint.setAntiAlias(true);
+        mTickPaint.setAntiAlias(mRenderQuality == RENDER_QUALITY_HIGH);
+        mTickPaint.setStrokeCap(Paint.Cap.ROUND);
         mTickPaint.setColor(mTickColor);
+        mTickPaint.setStrokeWidth(mTickSize * 2);
+
+        mAxisLabelPaint = new Paint();
+        mAxisLabelPaint.setAntiAlias(mRenderQuality != RENDER_QUALITY_LOW);
+        mAxisLabelPaint.setTextAlign(Paint.Align.CENTER);
+        mAxisLabelPaint.setColor(mTickColor);
+        mAxisLabelPaint.setTextSize(mAxisLabelTextSize);
+        mAxisLabelsValid = false;
 
         // Initialize the paint, set values
         mFirstConnectingLinePaint = new Paint();
@@ -1347,6 +2203,9 @@ public abstract class AbsRangeBar extends View {
         mSecondConnectingLinePaint.setAntiAlias(true);
         mSecondConnectingLinePaint.setColor(mSecondConnectingLineColor);
         mSecondConnectingLinePaint.setStrokeWidth(mConnectingLineWeight);
+        applyConnectingLineShader(isEnabled());
+
+        updateBarSpanInset();
     }
 
     protected void resizeBar(int w, int h) {
@@ -1354,17 +2213,373 @@ public abstract class AbsRangeBar extends View {
     }
 
     /**
-     * Draws the tick marks on the bar.
+     * Rebuilds the table of tick coordinates from {@link #computePointOfIndex(int, PointF)}.
+     * Subclasses must call this if their geometry changes outside of {@link #resizeBar(int, int)}.
+     */
+    protected void updateTickPoints() {
+        mDragSession.reset();
+        final int length = mTickCount * 2;
+        if (mTickPoints.length != length) {
+            mTickPoints = new float[length];
+        }
+        // Mark valid up front so that computePointOfIndex can't recurse back in here
+        mTickPointsValid = true;
+        computeTickPoints(mTickPoints);
+        mAxisLabelsValid = false;
+        updateTickLevelOfDetail();
+    }
+
+    /**
+     * Fills the table of tick coordinates: the x and y of each tick, in order. By default this
+     * calls {@link #computePointOfIndex(int, PointF)} for every tick; subclasses can override it
+     * to fill the whole table at once.
+     *
+     * @param pointsOut receives the points; holds exactly {@link #getTickCount()} points
+     */
+    protected void computeTickPoints(float[] pointsOut) {
+        for (int i = 0; i < mTickCount; i++) {
+            computePointOfIndex(i, mTickPointTemp);
+            pointsOut[i * 2] = mTickPointTemp.x;
+            pointsOut[i * 2 + 1] = mTickPointTemp.y;
+        }
+    }
+
+    private void updateTickLevelOfDetail() {
+        if (!mTickPointsValid || mTickPoints.length != mTickCount * 2) {
+            // Picked up by updateTickPoints
+            return;
+        }
+        float minTickSpacing = mMinTickSpacing;
+        if (mRenderQuality == RENDER_QUALITY_LOW) {
+            minTickSpacing *= LOW_QUALITY_TICK_SPACING_SCALE;
+        }
+        mTickLevelOfDetail.update(mTickPoints, mTickCount, minTickSpacing, mMajorTickSpacing);
+    }
+
+    private void ensureTickPoints() {
+        if (!mTickPointsValid || mTickPoints.length != mTickCount * 2) {
+            updateTickPoints();
+        }
+    }
+
+    /**
+     * Gets the coordinates of the index-th tick from the precomputed tick table.
+     *
+     * @param index    the zero-based index of the tick
+     * @param pointOut the coordinates of the tick will be stored in this object
+     */
+    public void getPointOfIndex(int index, PointF pointOut) {
+        if (index < 0 || index >= mTickCount) {
+            computePointOfIndex(index, pointOut);
+            return;
+        }
+        ensureTickPoints();
+        pointOut.set(mTickPoints[index * 2], mTickPoints[index * 2 + 1]);
+    }
+
+    // Half of the widest stroke drawn along the bar, plus a pixel for anti-aliasing
+    private void updateBarSpanInset() {
+        float weight = Math.max(Math.max(mBarWeight, mConnectingLineWeight), mTickSize * 2);
+        float inset = weight / 2f + 1f;
+        if (mBarSpanInset != inset) {
+            mBarSpanInset = inset;
+            if (mDrawAxisLabels) {
+                // The labels are spaced out from the bar by the inset
+                onAxisLabelsHeightChanged();
+            }
+        }
+    }
+
+    /**
+     * Gets the bounds of the part of the bar between two points on the bar. Used to invalidate
+     * only the affected part of the bar and connecting line when a pin moves. The default is the
+     * box spanned by the two points, which is exact for straight bars.
+     *
+     * @param point1    one end of the span
+     * @param point2    the other end of the span
+     * @param boundsOut the bounds will be stored in this object
+     */
+    protected void getBarSpanBounds(PointF point1, PointF point2, RectF boundsOut) {
+        boundsOut.set(point1.x, point1.y, point1.x, point1.y);
+        boundsOut.union(point2.x, point2.y);
+    }
+
+    /**
+     * Creates the shader for a connecting line color ramp, laid out for a bar that runs from 0
+     * to 1. It is fitted to the actual bar with {@link #getColorRampMatrix(Matrix)}, so it doesn't
+     * need to be rebuilt when the size changes.
+     *
+     * @param colors    the colors of the ramp
+     * @param positions the relative positions of the colors, or null to space them evenly
+     * @return the shader, or null if this bar doesn't support color ramps
+     */
+    protected Shader createColorRampShader(int[] colors, float[] positions) {
+        return null;
+    }
+
+    /**
+     * Sets the local matrix that fits the shader from {@link #createColorRampShader(int[], float[])}
+     * to the current bar geometry.
+     *
+     * @param matrixOut the matrix to set
+     */
+    protected void getColorRampMatrix(Matrix matrixOut) {
+        matrixOut.reset();
+    }
+
+    private void updateColorRampMatrix() {
+        if (mConnectingLineShader != null) {
+            getColorRampMatrix(mConnectingLineShaderMatrix);
+            mConnectingLineShader.setLocalMatrix(mConnectingLineShaderMatrix);
+        }
+    }
+
+    private void applyConnectingLineShader(boolean enabled) {
+        Shader shader = enabled ? mConnectingLineShader : null;
+        mFirstConnectingLinePaint.setShader(shader);
+        mSecondConnectingLinePaint.setShader(shader);
+    }
+
+    /**
+     * Gets the center of the axis label of a tick. By default labels are centered below the tick.
+     *
+     * @param index      the index of the tick
+     * @param gap        the space to leave between the bar and the label
+     * @param halfWidth  half of the label width
+     * @param halfHeight half of the label height
+     * @param centerOut  receives the center of the label
+     */
+    protected void getAxisLabelCenter(int index, float gap, float halfWidth, float halfHeight,
+                                      PointF centerOut) {
+        getPointOfIndex(index, centerOut);
+        centerOut.y += gap + halfHeight;
+    }
+
+    /**
+     * Gets the height of the axis labels, including the gap between them and the bar, or 0 when
+     * axis labels are disabled. Subclasses that draw the labels outside of the bar reserve this
+     * much room for them.
+     */
+    protected float getAxisLabelsHeight() {
+        if (!mDrawAxisLabels) {
+            return 0f;
+        }
+        return mAxisLabelOffset + mBarSpanInset
+                + mAxisLabelPaint.descent() - mAxisLabelPaint.ascent();
+    }
+
+    // Lays the bar out again for the new room taken by the axis labels
+    private void onAxisLabelsHeightChanged() {
+        requestLayout();
+        if (getWidth() > 0 && getHeight() > 0) {
+            layoutBar(getWidth(), getHeight());
+            invalidate();
+        }
+    }
+
+    private void invalidateAxisLabels() {
+        mAxisLabelsValid = false;
+        if (mDrawAxisLabels) {
+            invalidateStaticLayer();
+        }
+    }
+
+    // Picks the labels to draw, stepping through the ticks with a stride wide enough for the
+    // widest label and then dropping any label that still collides with its neighbor
+    private void updateAxisLabels() {
+        mAxisLabelsValid = true;
+        mAxisLabelCount = 0;
+        mAxisLabelExtent.setEmpty();
+
+        ensureTickPoints();
+        final int lastIndex = mTickCount - 1;
+        final float spacing = (float) Math.hypot(mTickPoints[2] - mTickPoints[0],
+                mTickPoints[3] - mTickPoints[1]);
+        final String widestLabel = findWidestLabel(mAxisLabelPaint);
+        if (spacing <= 0 || widestLabel == null) {
+            return;
+        }
+
+        final int stride = TickLevelOfDetail.getTickStride(
+                (mAxisLabelPaint.measureText(widestLabel) + mAxisLabelSpacing) / spacing);
+        final int capacity = lastIndex / stride + 2;
+        if (mAxisLabels.length < capacity) {
+            mAxisLabels = new String[capacity];
+            mAxisLabelPoints = new float[capacity * 2];
+        }
+
+        final float ascent = mAxisLabelPaint.ascent();
+        final float descent = mAxisLabelPaint.descent();
+        final float halfHeight = (descent - ascent) / 2f;
+        final float halfSpacing = mAxisLabelSpacing / 2f;
+        final float gap = mAxisLabelOffset + mBarSpanInset;
+
+        for (int i = 0; ; i += stride) {
+            final int index = Math.min(i, lastIndex);
+            String label = getPinLabel(index);
+            if (label != null) {
+                float halfWidth = mAxisLabelPaint.measureText(label) / 2f;
+                getAxisLabelCenter(index, gap, halfWidth, halfHeight, mAxisLabelCenter);
+                mAxisLabelBounds.set(mAxisLabelCenter.x - halfWidth - halfSpacing,
+                        mAxisLabelCenter.y - halfHeight,
+                        mAxisLabelCenter.x + halfWidth + halfSpacing,
+                        mAxisLabelCenter.y + halfHeight);
+
+                boolean fits = true;
+                if (mAxisLabelCount > 0 &&
+                        RectF.intersects(mAxisLabelBounds, mAxisLabelPreviousBounds)) {
+                    // The last tick is always labeled, in place of its neighbor if need be
+                    if (index == lastIndex && mAxisLabelCount > 1) {
+                        mAxisLabelCount--;
+                    } else {
+                        fits = false;
+                    }
+                }
+                // The ends of an arc may come around close to the first label
+                if (fits && mAxisLabelCount > 1 &&
+                        RectF.intersects(mAxisLabelBounds, mAxisLabelFirstBounds)) {
+                    fits = false;
+                }
+
+                if (fits) {
+                    if (mAxisLabelCount == 0) {
+                        mAxisLabelFirstBounds.set(mAxisLabelBounds);
+                    }
+                    mAxisLabelPreviousBounds.set(mAxisLabelBounds);
+                    mAxisLabels[mAxisLabelCount] = label;
+                    mAxisLabelPoints[mAxisLabelCount * 2] = mAxisLabelCenter.x;
+                    mAxisLabelPoints[mAxisLabelCount * 2 + 1] =
+                            mAxisLabelCenter.y - (ascent + descent) / 2f;
+                    mAxisLabelCount++;
+                    mAxisLabelExtent.union(mAxisLabelCenter.x - halfWidth,
+                            mAxisLabelCenter.y - halfHeight,
+                            mAxisLabelCenter.x + halfWidth,
+                            mAxisLabelCenter.y + halfHeight);
+                }
+            }
+            if (index == lastIndex) {
+                break;
+            }
+        }
+    }
+
+    private void drawAxisLabels(Canvas canvas) {
+        if (!mAxisLabelsValid) {
+            updateAxisLabels();
+        }
+        for (int i = 0; i < mAxisLabelCount; i++) {
+            canvas.drawText(mAxisLabels[i], mAxisLabelPoints[i * 2], mAxisLabelPoints[i * 2 + 1],
+                    mAxisLabelPaint);
+        }
+    }
+
+    /**
+     * Marks the cached tick layer as stale so that it is redrawn on the next frame.
+     * Call this whenever something drawn by {@link #drawTicks(Canvas)} changes.
+     */
+    protected void invalidateStaticLayer() {
+        mStaticLayerDirty = true;
+        scheduleInvalidate();
+    }
+
+    /**
+     * Draws the ticks, (re)building the cached layer first if it is stale.
+     *
+     * @param canvas Canvas to draw on
+     */
+    private void drawStaticLayer(Canvas canvas) {
+        if (mStaticLayerDirty) {
+            updateStaticLayer();
+        }
+        if (mStaticLayer != null && !mStaticLayerBounds.isEmpty()) {
+            canvas.drawBitmap(mStaticLayer, mStaticLayerSrc, mStaticLayerBounds, null);
+        }
+    }
+
+    private void updateStaticLayer() {
+        mStaticLayerDirty = false;
+        getStaticLayerExtent(mStaticLayerExtent);
+        mStaticLayerExtent.roundOut(mStaticLayerBounds);
+        if (!mStaticLayerBounds.intersect(0, 0, getWidth(), getHeight())) {
+            mStaticLayerBounds.setEmpty();
+            return;
+        }
+
+        // Reuse the bitmap unless it is too small, or much larger than needed
+        final int width = mStaticLayerBounds.width();
+        final int height = mStaticLayerBounds.height();
+        if (mStaticLayer == null ||
+                mStaticLayer.getWidth() < width || mStaticLayer.getHeight() < height ||
+                mStaticLayer.getWidth() * mStaticLayer.getHeight() > width * height * 2) {
+            releaseStaticLayer();
+            mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mStaticLayerCanvas = new Canvas(mStaticLayer);
+        }
+        mStaticLayerSrc.set(0, 0, width, height);
+
+        mStaticLayer.eraseColor(Color.TRANSPARENT);
+        mStaticLayerCanvas.save();
+        mStaticLayerCanvas.translate(-mStaticLayerBounds.left, -mStaticLayerBounds.top);
+        if (mDrawTicks) {
+            drawTicks(mStaticLayerCanvas);
+        }
+        if (mDrawAxisLabels) {
+            drawAxisLabels(mStaticLayerCanvas);
+        }
+        mStaticLayerCanvas.restore();
+    }
+
+    // The area drawn to by the ticks and axis labels
+    private void getStaticLayerExtent(RectF extentOut) {
+        extentOut.setEmpty();
+        if (mDrawTicks && mTickSize > 0 && mTickCount > 0) {
+            ensureTickPoints();
+            extentOut.set(mTickPoints[0], mTickPoints[1], mTickPoints[0], mTickPoints[1]);
+            for (int i = 1; i < mTickCount; i++) {
+                extentOut.union(mTickPoints[i * 2], mTickPoints[i * 2 + 1]);
+            }
+            // Leave room for the largest tick and for anti-aliasing
+            final float inset = mTickSize * TickLevelOfDetail.MAJOR_TICK_SCALE + 1;
+            extentOut.inset(-inset, -inset);
+        }
+        if (mDrawAxisLabels) {
+            if (!mAxisLabelsValid) {
+                updateAxisLabels();
+            }
+            if (!mAxisLabelExtent.isEmpty()) {
+                // Glyphs can overhang their measured width a little
+                float inset = mAxisLabelPaint.getTextSize() / 4f;
+                mAxisLabelExtent.inset(-inset, -inset);
+                extentOut.union(mAxisLabelExtent);
+                mAxisLabelExtent.inset(inset, inset);
+            }
+        }
+    }
+
+    private void releaseStaticLayer() {
+        if (mStaticLayer != null) {
+            mStaticLayer.recycle();
+            mStaticLayer = null;
+            mStaticLayerCanvas = null;
+        }
+        mStaticLayerDirty = true;
+    }
+
+    /**
+     * Draws the tick marks on the bar. All ticks are sent to the canvas in a single
+     * {@link Canvas#drawPoints(float[], int, int, Paint)} call straight from the tick table.
+     * When the ticks are too dense, only the minor and major ticks picked by the level of detail
+     * are drawn instead.
      *
      * @param canvas Canvas to draw on; should be the Canvas passed into {#link
      *               View#onDraw()}
      */
     protected void drawTicks(Canvas canvas) {
-        PointF tempPoint = new PointF();
-        for (int i = 0; i < mTickCount; i++) {
-            getPointOfIndex(i, tempPoint);
-            canvas.drawCircle(tempPoint.x, tempPoint.y, mTickSize, mTickPaint);
+        if (mTickSize <= 0) {
+            return;
         }
+        ensureTickPoints();
+        mTickLevelOfDetail.draw(canvas, mTickPoints, mTickCount, mTickPaint);
     }
 
     /**
@@ -1427,17 +2642,21 @@ public abstract class AbsRangeBar extends View {
     protected abstract int getNearestIndex(PointF point);
 
     /**
-     * Gets the coordinates of the index-th tick.
+     * Calculates the coordinates of the index-th tick. Only called to (re)build the tick table;
+     * everything else should go through {@link #getPointOfIndex(int, PointF)}.
      */
-    protected abstract void getPointOfIndex(int index, PointF pointOut);
+    protected abstract void computePointOfIndex(int index, PointF pointOut);
 
     /**
-     * Draws the bar on the given Canvas.
+     * Draws the parts of the bar on the given Canvas that will not be covered by the connecting
+     * line between the two points, so no bar pixel is filled only to be painted over.
      *
-     * @param canvas Canvas to draw on; should be the Canvas passed into {#link
-     *               View#onDraw()}
+     * @param canvas      Canvas to draw on; should be the Canvas passed into {#link
+     *                    View#onDraw()}
+     * @param firstPoint  the position of the first pin
+     * @param secondPoint the position of the second pin
      */
-    protected abstract void drawBar(Canvas canvas);
+    protected abstract void drawBar(Canvas canvas, PointF firstPoint, PointF secondPoint);
 
     /**
      * Draw a connecting line between two points that have been precalculated to be on the bar.
@@ -1484,6 +2703,20 @@ public abstract class AbsRangeBar extends View {
         void onStopTrackingTouch(AbsRangeBar rangeBar);
     }
 
+    /**
+     * Receives touch prediction metrics, once per drag frame in which a prediction made on an
+     * earlier frame could be checked against real touch samples.
+     */
+    public interface OnTouchPredictionListener {
+        /**
+         * @param rangeBar  The RangeBar being dragged
+         * @param errorPx   Distance, in pixels, between the predicted touch position and the real
+         *                  one at the time it was predicted for
+         * @param lagMillis Time from the newest touch sample to the frame that applied it
+         */
+        void onTouchPrediction(AbsRangeBar rangeBar, float errorPx, long lagMillis);
+    }
+
     public interface IndexFormatter {
         String getLabel(int index);
     }
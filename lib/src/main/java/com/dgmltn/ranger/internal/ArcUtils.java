@@ -28,6 +28,7 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PointF;
+import android.graphics.RectF;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
@@ -51,6 +52,41 @@ public final class ArcUtils
 {
 	private static final double FULL_CIRCLE_RADIANS = toRadians(360d);
 
+	// Scratch space for the start and end points of arc segments, per thread since arcs can be built
+	// off the UI thread (see RangeBarRenderer)
+	private static final ThreadLocal<float[]> sPoints = new ThreadLocal<float[]>()
+	{
+		@Override
+		protected float[] initialValue()
+		{
+			return new float[4];
+		}
+	};
+
+	/**
+	 * The number of Bézier segments a full circle is split into by
+	 * {@link #drawArc(android.graphics.Canvas, android.graphics.PointF, float, float, float, android.graphics.Paint)}.
+	 */
+	public static final int DEFAULT_POINTS_ON_CIRCLE = 8;
+
+	/**
+	 * Arcs are approximated with cubic Béziers built in Java; see
+	 * {@link #createBezierArcDegrees(android.graphics.PointF, float, float, float, int, boolean, android.graphics.Path)}.
+	 */
+	public static final int MODE_BEZIER = 0;
+
+	/**
+	 * Arcs are drawn by the platform with
+	 * {@link Canvas#drawArc(android.graphics.RectF, float, float, boolean, android.graphics.Paint)}.
+	 * Cheaper to build, but subject to the platform's own arc rendering.
+	 */
+	public static final int MODE_NATIVE = 1;
+
+	/**
+	 * Upper bound, in degrees, on the error of {@link #fastAtan2Degrees(float, float)}.
+	 */
+	public static final float FAST_ATAN2_MAX_ERROR_DEGREES = 0.001f;
+
 	private ArcUtils() { }
 
 	/**
@@ -68,7 +104,28 @@ public final class ArcUtils
 	public static void drawArc(@NonNull Canvas canvas, PointF circleCenter, float circleRadius,
 		float startAngle, float sweepAngle, @NonNull Paint paint)
 	{
-		drawArc(canvas, circleCenter, circleRadius, startAngle, sweepAngle, paint, 8, false);
+		drawArc(canvas, circleCenter, circleRadius, startAngle, sweepAngle, paint, DEFAULT_POINTS_ON_CIRCLE, false);
+	}
+
+	/**
+	 * Draws a circular arc on the given {@code Canvas}, building it in {@code reusePath} instead of a new
+	 * {@code Path}.
+	 *
+	 * @param canvas       The canvas to draw into.
+	 * @param circleCenter The center of the circle on which to draw the arc.
+	 * @param circleRadius The radius of the circle on which to draw the arc.
+	 * @param startAngle   Starting angle (in degrees) where the arc begins.
+	 * @param sweepAngle   Sweep angle (in degrees) measured clockwise.
+	 * @param paint        The paint to use then drawing the arc.
+	 * @param reusePath    The path to reset and fill with the arc.
+	 *
+	 * @see #drawArc(android.graphics.Canvas, android.graphics.PointF, float, float, float, android.graphics.Paint, int, boolean, android.graphics.Path)
+	 */
+	public static void drawArc(@NonNull Canvas canvas, PointF circleCenter, float circleRadius,
+		float startAngle, float sweepAngle, @NonNull Paint paint, @NonNull Path reusePath)
+	{
+		drawArc(canvas, circleCenter, circleRadius, startAngle, sweepAngle, paint,
+			DEFAULT_POINTS_ON_CIRCLE, false, reusePath);
 	}
 
 	/**
@@ -88,20 +145,172 @@ public final class ArcUtils
 	public static void drawArc(@NonNull Canvas canvas, PointF circleCenter, float circleRadius,
 		float startAngle, float sweepAngle, @NonNull Paint paint,
 		int arcsPointsOnCircle, boolean arcsOverlayPoints)
+	{
+		drawArc(canvas, circleCenter, circleRadius, startAngle, sweepAngle, paint,
+			arcsPointsOnCircle, arcsOverlayPoints, null);
+	}
+
+	/**
+	 * Draws a circular arc on the given {@code Canvas}.
+	 *
+	 * @param canvas             The canvas to draw into.
+	 * @param circleCenter       The center of the circle on which to draw the arc.
+	 * @param circleRadius       The radius of the circle on which to draw the arc.
+	 * @param startAngle         Starting angle (in degrees) where the arc begins.
+	 * @param sweepAngle         Sweep angle (in degrees) measured clockwise.
+	 * @param paint              The paint to use then drawing the arc.
+	 * @param arcsPointsOnCircle See {@link #createBezierArcDegrees(android.graphics.PointF, float, float, float, int, boolean, android.graphics.Path)}.
+	 * @param arcsOverlayPoints  See {@link #createBezierArcDegrees(android.graphics.PointF, float, float, float, int, boolean, android.graphics.Path)}.
+	 * @param reusePath          A path to reset and fill with the arc, or {@code null} to create a new path.
+	 *
+	 * @see #drawArc(android.graphics.Canvas, android.graphics.PointF, float, float, float, android.graphics.Paint, android.graphics.Path)
+	 */
+	public static void drawArc(@NonNull Canvas canvas, PointF circleCenter, float circleRadius,
+		float startAngle, float sweepAngle, @NonNull Paint paint,
+		int arcsPointsOnCircle, boolean arcsOverlayPoints, @Nullable Path reusePath)
 	{
 		if (sweepAngle == 0f)
 		{
-			final PointF p = pointFromAngleDegrees(circleCenter, circleRadius, startAngle);
-			canvas.drawPoint(p.x, p.y, paint);
+			final float[] points = sPoints.get();
+			pointFromAngleDegrees(circleCenter, circleRadius, startAngle, points, 0);
+			canvas.drawPoint(points[0], points[1], paint);
 		}
 		else
 		{
+			if (reusePath != null) { reusePath.rewind(); }
 			canvas.drawPath(createBezierArcDegrees(
 				circleCenter, circleRadius, startAngle, sweepAngle,
-				arcsPointsOnCircle, arcsOverlayPoints, null), paint);
+				arcsPointsOnCircle, arcsOverlayPoints, reusePath), paint);
+		}
+	}
+
+	/**
+	 * Draws a circular arc on the given {@code Canvas} using the given mode.
+	 *
+	 * @param canvas       The canvas to draw into.
+	 * @param mode         {@link #MODE_BEZIER} or {@link #MODE_NATIVE}.
+	 * @param circleCenter The center of the circle on which to draw the arc.
+	 * @param circleRadius The radius of the circle on which to draw the arc.
+	 * @param startAngle   Starting angle (in degrees) where the arc begins.
+	 * @param sweepAngle   Sweep angle (in degrees) measured clockwise.
+	 * @param paint        The paint to use then drawing the arc.
+	 * @param reusePath    The path to reset and fill with the arc in {@link #MODE_BEZIER}.
+	 * @param circleOval   The bounds of the circle, as set by
+	 *                     {@link #setOval(android.graphics.PointF, float, android.graphics.RectF)}; used in
+	 *                     {@link #MODE_NATIVE}.
+	 */
+	public static void drawArc(@NonNull Canvas canvas, int mode, PointF circleCenter, float circleRadius,
+		float startAngle, float sweepAngle, @NonNull Paint paint, @NonNull Path reusePath,
+		@NonNull RectF circleOval)
+	{
+		drawArc(canvas, mode, circleCenter, circleRadius, startAngle, sweepAngle, paint,
+			DEFAULT_POINTS_ON_CIRCLE, reusePath, circleOval);
+	}
+
+	/**
+	 * Draws a circular arc on the given {@code Canvas} using the given mode.
+	 *
+	 * @param canvas             The canvas to draw into.
+	 * @param mode               {@link #MODE_BEZIER} or {@link #MODE_NATIVE}.
+	 * @param circleCenter       The center of the circle on which to draw the arc.
+	 * @param circleRadius       The radius of the circle on which to draw the arc.
+	 * @param startAngle         Starting angle (in degrees) where the arc begins.
+	 * @param sweepAngle         Sweep angle (in degrees) measured clockwise.
+	 * @param paint              The paint to use then drawing the arc.
+	 * @param arcsPointsOnCircle The number of Bézier segments per full circle in {@link #MODE_BEZIER};
+	 *                           fewer segments are cheaper but less accurate.
+	 * @param reusePath          The path to reset and fill with the arc in {@link #MODE_BEZIER}.
+	 * @param circleOval         The bounds of the circle, as set by
+	 *                           {@link #setOval(android.graphics.PointF, float, android.graphics.RectF)}; used in
+	 *                           {@link #MODE_NATIVE}.
+	 */
+	public static void drawArc(@NonNull Canvas canvas, int mode, PointF circleCenter, float circleRadius,
+		float startAngle, float sweepAngle, @NonNull Paint paint, int arcsPointsOnCircle,
+		@NonNull Path reusePath, @NonNull RectF circleOval)
+	{
+		if (mode == MODE_NATIVE)
+		{
+			drawArc(canvas, circleOval, startAngle, sweepAngle, paint);
+		}
+		else
+		{
+			drawArc(canvas, circleCenter, circleRadius, startAngle, sweepAngle, paint,
+				arcsPointsOnCircle, false, reusePath);
+		}
+	}
+
+	/**
+	 * Draws a circular arc on the given {@code Canvas} with the platform's
+	 * {@link Canvas#drawArc(android.graphics.RectF, float, float, boolean, android.graphics.Paint)}.
+	 * Unlike the platform method, a sweep of zero draws a single point, like the Bézier methods.
+	 *
+	 * @param canvas     The canvas to draw into.
+	 * @param circleOval The bounds of the circle on which to draw the arc.
+	 * @param startAngle Starting angle (in degrees) where the arc begins.
+	 * @param sweepAngle Sweep angle (in degrees) measured clockwise.
+	 * @param paint      The paint to use then drawing the arc.
+	 */
+	public static void drawArc(@NonNull Canvas canvas, @NonNull RectF circleOval, float startAngle,
+		float sweepAngle, @NonNull Paint paint)
+	{
+		if (sweepAngle == 0f)
+		{
+			final float[] points = sPoints.get();
+			pointFromAngleRadians(circleOval.centerX(), circleOval.centerY(), circleOval.width() / 2f,
+				toRadians(startAngle), points, 0);
+			canvas.drawPoint(points[0], points[1], paint);
+		}
+		else
+		{
+			canvas.drawArc(circleOval, startAngle, sweepAngle, false, paint);
 		}
 	}
 
+	/**
+	 * Sets the bounds of a circle, for use with
+	 * {@link #drawArc(android.graphics.Canvas, android.graphics.RectF, float, float, android.graphics.Paint)}.
+	 *
+	 * @param circleCenter The center of the circle.
+	 * @param circleRadius The radius of the circle.
+	 * @param ovalOut      The rect to receive the bounds.
+	 */
+	public static void setOval(@NonNull PointF circleCenter, float circleRadius, @NonNull RectF ovalOut)
+	{
+		ovalOut.set(circleCenter.x - circleRadius, circleCenter.y - circleRadius,
+			circleCenter.x + circleRadius, circleCenter.y + circleRadius);
+	}
+
+	/**
+	 * Approximates {@code Math.toDegrees(Math.atan2(y, x))} with a polynomial, at a fraction of
+	 * its cost. The result is within {@link #FAST_ATAN2_MAX_ERROR_DEGREES} of the exact angle;
+	 * callers that must agree with the exact angle near some threshold should fall back to
+	 * {@link Math#atan2(double, double)} when the result is that close to it.
+	 *
+	 * @param y The ordinate.
+	 * @param x The abscissa.
+	 *
+	 * @return The angle of the point, in degrees, in the range 180° >= x >= -180°.
+	 */
+	public static float fastAtan2Degrees(float y, float x)
+	{
+		float ax = Math.abs(x);
+		float ay = Math.abs(y);
+		if (ax == 0f && ay == 0f) { return 0f; }
+
+		// Minimax polynomial for atan(z) on [0, 1], max error about 1e-5 radians
+		boolean steep = ay > ax;
+		float z = steep ? ax / ay : ay / ax;
+		float z2 = z * z;
+		float angle = z * (0.99997726f + z2 * (-0.33262347f + z2 * (0.19354346f
+			+ z2 * (-0.11643287f + z2 * (0.05265332f + z2 * -0.01172120f)))));
+		angle *= (float) (180d / Math.PI);
+
+		if (steep) { angle = 90f - angle; }
+		if (x < 0f) { angle = 180f - angle; }
+		if (y < 0f) { angle = -angle; }
+		return angle;
+	}
+
 	/**
 	 * Normalize the input radians in the range 360° > x >= 0°.
 	 *
@@ -132,8 +341,62 @@ public final class ArcUtils
 	@NonNull
 	public static PointF pointFromAngleRadians(@NonNull PointF center, float radius, double angleRadians)
 	{
-		return new PointF((float)(center.x + radius * cos(angleRadians)),
+		return pointFromAngleRadians(center, radius, angleRadians, new PointF());
+	}
+
+	/**
+	 * Computes the point of a given angle (in radians) on a circle, without allocating.
+	 *
+	 * @param center       The center of the circle.
+	 * @param radius       The radius of the circle.
+	 * @param angleRadians The angle (in radians).
+	 * @param pointOut     The point of the given angle on the specified circle will be stored in this object.
+	 *
+	 * @return {@code pointOut}.
+	 *
+	 * @see #pointFromAngleDegrees(android.graphics.PointF, float, float, android.graphics.PointF)
+	 */
+	@NonNull
+	public static PointF pointFromAngleRadians(@NonNull PointF center, float radius, double angleRadians,
+		@NonNull PointF pointOut)
+	{
+		pointOut.set((float)(center.x + radius * cos(angleRadians)),
 			(float)(center.y + radius * sin(angleRadians)));
+		return pointOut;
+	}
+
+	/**
+	 * Computes the point of a given angle (in radians) on a circle into a primitive array, without allocating.
+	 *
+	 * @param center       The center of the circle.
+	 * @param radius       The radius of the circle.
+	 * @param angleRadians The angle (in radians).
+	 * @param pointsOut    The x and y of the point will be stored at {@code offset} and {@code offset + 1}.
+	 * @param offset       Where in {@code pointsOut} to store the point.
+	 *
+	 * @see #pointFromAngleDegrees(android.graphics.PointF, float, float, float[], int)
+	 */
+	public static void pointFromAngleRadians(@NonNull PointF center, float radius, double angleRadians,
+		@NonNull float[] pointsOut, int offset)
+	{
+		pointFromAngleRadians(center.x, center.y, radius, angleRadians, pointsOut, offset);
+	}
+
+	/**
+	 * Computes the point of a given angle (in radians) on a circle into a primitive array, without allocating.
+	 *
+	 * @param centerX      The x-coordinate of the center of the circle.
+	 * @param centerY      The y-coordinate of the center of the circle.
+	 * @param radius       The radius of the circle.
+	 * @param angleRadians The angle (in radians).
+	 * @param pointsOut    The x and y of the point will be stored at {@code offset} and {@code offset + 1}.
+	 * @param offset       Where in {@code pointsOut} to store the point.
+	 */
+	public static void pointFromAngleRadians(float centerX, float centerY, float radius, double angleRadians,
+		@NonNull float[] pointsOut, int offset)
+	{
+		pointsOut[offset] = (float)(centerX + radius * cos(angleRadians));
+		pointsOut[offset + 1] = (float)(centerY + radius * sin(angleRadians));
 	}
 
 	/**
@@ -153,6 +416,42 @@ public final class ArcUtils
 		return pointFromAngleRadians(center, radius, toRadians(angleDegrees));
 	}
 
+	/**
+	 * Computes the point of a given angle (in degrees) on a circle, without allocating.
+	 *
+	 * @param center       The center of the circle.
+	 * @param radius       The radius of the circle.
+	 * @param angleDegrees The angle (in degrees).
+	 * @param pointOut     The point of the given angle on the specified circle will be stored in this object.
+	 *
+	 * @return {@code pointOut}.
+	 *
+	 * @see #pointFromAngleRadians(android.graphics.PointF, float, double, android.graphics.PointF)
+	 */
+	@NonNull
+	public static PointF pointFromAngleDegrees(@NonNull PointF center, float radius, float angleDegrees,
+		@NonNull PointF pointOut)
+	{
+		return pointFromAngleRadians(center, radius, toRadians(angleDegrees), pointOut);
+	}
+
+	/**
+	 * Computes the point of a given angle (in degrees) on a circle into a primitive array, without allocating.
+	 *
+	 * @param center       The center of the circle.
+	 * @param radius       The radius of the circle.
+	 * @param angleDegrees The angle (in degrees).
+	 * @param pointsOut    The x and y of the point will be stored at {@code offset} and {@code offset + 1}.
+	 * @param offset       Where in {@code pointsOut} to store the point.
+	 *
+	 * @see #pointFromAngleRadians(android.graphics.PointF, float, double, float[], int)
+	 */
+	public static void pointFromAngleDegrees(@NonNull PointF center, float radius, float angleDegrees,
+		@NonNull float[] pointsOut, int offset)
+	{
+		pointFromAngleRadians(center, radius, toRadians(angleDegrees), pointsOut, offset);
+	}
+
 	/**
 	 * Adds a circular arc to the given path by approximating it through a cubic Bézier curve.
 	 * <p/>
@@ -184,22 +483,45 @@ public final class ArcUtils
 	public static void addBezierArcToPath(@NonNull Path path, @NonNull PointF center,
 		@NonNull PointF start, @NonNull PointF end, boolean moveToStart)
 	{
-		if (moveToStart) { path.moveTo(start.x, start.y); }
-		if (start.equals(end)) { return; }
+		addBezierArcToPath(path, center.x, center.y, start.x, start.y, end.x, end.y, moveToStart);
+	}
+
+	/**
+	 * Adds a circular arc to the given path by approximating it through a cubic Bézier curve, taking all points
+	 * as primitive coordinates.
+	 *
+	 * @param path        The path to add the arc to.
+	 * @param centerX     The x of the center of the circle.
+	 * @param centerY     The y of the center of the circle.
+	 * @param startX      The x of the starting point of the arc on the circle.
+	 * @param startY      The y of the starting point of the arc on the circle.
+	 * @param endX        The x of the ending point of the arc on the circle.
+	 * @param endY        The y of the ending point of the arc on the circle.
+	 * @param moveToStart If {@code true}, move to the starting point of the arc
+	 *                    (see: {@link android.graphics.Path#moveTo(float, float)}).
+	 *
+	 * @see #addBezierArcToPath(android.graphics.Path, android.graphics.PointF, android.graphics.PointF,
+	 * android.graphics.PointF, boolean)
+	 */
+	public static void addBezierArcToPath(@NonNull Path path, float centerX, float centerY,
+		float startX, float startY, float endX, float endY, boolean moveToStart)
+	{
+		if (moveToStart) { path.moveTo(startX, startY); }
+		if (startX == endX && startY == endY) { return; }
 
-		final double ax = start.x - center.x;
-		final double ay = start.y - center.y;
-		final double bx = end.x - center.x;
-		final double by = end.y - center.y;
+		final double ax = startX - centerX;
+		final double ay = startY - centerY;
+		final double bx = endX - centerX;
+		final double by = endY - centerY;
 		final double q1 = ax * ax + ay * ay;
 		final double q2 = q1 + ax * bx + ay * by;
 		final double k2 = 4d / 3d * (sqrt(2d * q1 * q2) - q2) / (ax * by - ay * bx);
-		final float x2 = (float)(center.x + ax - k2 * ay);
-		final float y2 = (float)(center.y + ay + k2 * ax);
-		final float x3 = (float)(center.x + bx + k2 * by);
-		final float y3 = (float)(center.y + by - k2 * bx);
+		final float x2 = (float)(centerX + ax - k2 * ay);
+		final float y2 = (float)(centerY + ay + k2 * ax);
+		final float x3 = (float)(centerX + bx + k2 * by);
+		final float y3 = (float)(centerY + by - k2 * bx);
 
-		path.cubicTo(x2, y2, x3, y3, end.x, end.y);
+		path.cubicTo(x2, y2, x3, y3, endX, endY);
 	}
 
 	/**
@@ -269,9 +591,14 @@ public final class ArcUtils
 			final double threshold = FULL_CIRCLE_RADIANS / pointsOnCircle;
 			if (abs(sweepAngleRadians) > threshold)
 			{
+				// points holds the segment's start at 0 and its end at 2
+				final float[] points = sPoints.get();
 				double angle = normalizeRadians(startAngleRadians);
-				PointF end, start = pointFromAngleRadians(center, radius, angle);
-				path.moveTo(start.x, start.y);
+				pointFromAngleRadians(center, radius, angle, points, 0);
+				float startX = points[0];
+				float startY = points[1];
+				float endX, endY;
+				path.moveTo(startX, startY);
 				if (overlapPoints)
 				{
 					final boolean cw = sweepAngleRadians > 0; // clockwise?
@@ -281,11 +608,15 @@ public final class ArcUtils
 						double next = (cw ? ceil(angle / threshold) : floor(angle / threshold)) * threshold;
 						if (angle == next) { next += threshold * (cw ? 1d : -1d); }
 						final boolean isEnd = cw ? angleEnd <= next : angleEnd >= next;
-						end = pointFromAngleRadians(center, radius, isEnd ? angleEnd : next);
-						addBezierArcToPath(path, center, start, end, false);
+						final double endAngle = isEnd ? angleEnd : next;
+						pointFromAngleRadians(center, radius, endAngle, points, 2);
+						endX = points[2];
+						endY = points[3];
+						addBezierArcToPath(path, center.x, center.y, startX, startY, endX, endY, false);
 						if (isEnd) { break; }
 						angle = next;
-						start = end;
+						startX = endX;
+						startY = endY;
 					}
 				}
 				else
@@ -294,20 +625,23 @@ public final class ArcUtils
 					final double sweep = sweepAngleRadians / n;
 					for (int i = 0;
 						i < n;
-						i++, start = end)
+						i++, startX = endX, startY = endY)
 					{
 						angle += sweep;
-						end = pointFromAngleRadians(center, radius, angle);
-						addBezierArcToPath(path, center, start, end, false);
+						pointFromAngleRadians(center, radius, angle, points, 2);
+						endX = points[2];
+						endY = points[3];
+						addBezierArcToPath(path, center.x, center.y, startX, startY, endX, endY, false);
 					}
 				}
 				return path;
 			}
 		}
 
-		final PointF start = pointFromAngleRadians(center, radius, startAngleRadians);
-		final PointF end = pointFromAngleRadians(center, radius, startAngleRadians + sweepAngleRadians);
-		addBezierArcToPath(path, center, start, end, true);
+		final float[] points = sPoints.get();
+		pointFromAngleRadians(center, radius, startAngleRadians, points, 0);
+		pointFromAngleRadians(center, radius, startAngleRadians + sweepAngleRadians, points, 2);
+		addBezierArcToPath(path, center.x, center.y, points[0], points[1], points[2], points[3], true);
 		return path;
 	}
 
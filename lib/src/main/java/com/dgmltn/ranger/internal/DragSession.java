@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.dgmltn.ranger.internal;
+
+/**
+ * The range a dragged pin may move in: the ticks up to the other pin, and their points on the
+ * bar. These don't change while one pin is dragged, so they are worked out once per drag
+ * rather than on every move. Reset when tracking starts and stops and when the tick points
+ * change, and worked out again if the other pin is moved from outside during the drag.
+ * <p/>
+ * Works on plain coordinates, with the geometry of the bar behind {@link Bar}, so that the drag
+ * math can be tested off the device.
+ */
+class DragSession {
+
+    /**
+     * The geometry of the bar the pins are dragged along.
+     */
+    interface Bar {
+        int getTickCount();
+
+        void getPointOfIndex(int index, float[] pointOut);
+
+        void getNearestPointOnBar(float x, float y, float[] pointOut);
+
+        int comparePointsOnBar(float x1, float y1, float x2, float y2);
+
+        int getNearestIndex(float x, float y);
+    }
+
+    private final Bar mBar;
+    private boolean mBound;
+    private boolean mFirstPin;
+    private int mOtherPinIndex;
+    private int mIndexMin;
+    private int mIndexMax;
+    private final float[] mPointMin = new float[2];
+    private final float[] mPointMax = new float[2];
+
+    DragSession(Bar bar) {
+        mBar = bar;
+    }
+
+    void reset() {
+        mBound = false;
+    }
+
+    /**
+     * @param firstPin      true for the first pin, false for the second
+     * @param otherPinIndex the index of the pin that is not dragged
+     * @return true if the session is bound to that pin, and the other pin hasn't moved since
+     */
+    boolean isFor(boolean firstPin, int otherPinIndex) {
+        return mBound && mFirstPin == firstPin && mOtherPinIndex == otherPinIndex;
+    }
+
+    void bind(boolean firstPin, int otherPinIndex) {
+        if (isFor(firstPin, otherPinIndex)) {
+            return;
+        }
+        mOtherPinIndex = otherPinIndex;
+        if (firstPin) {
+            mIndexMin = 0;
+            mIndexMax = otherPinIndex - 1;
+        } else {
+            mIndexMin = otherPinIndex + 1;
+            mIndexMax = mBar.getTickCount() - 1;
+        }
+        mBar.getPointOfIndex(mIndexMin, mPointMin);
+        mBar.getPointOfIndex(mIndexMax, mPointMax);
+        // Bound last, as looking up the points may rebuild them and reset the session
+        mFirstPin = firstPin;
+        mBound = true;
+    }
+
+    int getIndexMin() {
+        return mIndexMin;
+    }
+
+    int getIndexMax() {
+        return mIndexMax;
+    }
+
+    void getPointMin(float[] pointOut) {
+        pointOut[0] = mPointMin[0];
+        pointOut[1] = mPointMin[1];
+    }
+
+    void getPointMax(float[] pointOut) {
+        pointOut[0] = mPointMax[0];
+        pointOut[1] = mPointMax[1];
+    }
+
+    /**
+     * Projects the point onto the bar, limited to the range of the pin.
+     *
+     * @return 0 if the point is inside the range, -1 or 1 if it was clamped to its start or end
+     */
+    int clamp(float x, float y, float[] pointOut) {
+        mBar.getNearestPointOnBar(x, y, pointOut);
+        if (mBar.comparePointsOnBar(mPointMin[0], mPointMin[1], pointOut[0], pointOut[1]) > 0) {
+            pointOut[0] = mPointMin[0];
+            pointOut[1] = mPointMin[1];
+            return -1;
+        }
+        if (mBar.comparePointsOnBar(pointOut[0], pointOut[1], mPointMax[0], mPointMax[1]) > 0) {
+            pointOut[0] = mPointMax[0];
+            pointOut[1] = mPointMax[1];
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Works out where a touch takes the dragged pin. The index is taken from the touch itself
+     * rather than from where the pin was drawn last frame, so it never trails the finger.
+     *
+     * @param pointOut receives the point on the bar to move the pin to
+     * @return the index of the tick the pin is on: the nearest tick, or the end of the range the
+     * touch was clamped to
+     */
+    int drag(float x, float y, float[] pointOut) {
+        int clamped = clamp(x, y, pointOut);
+        if (clamped < 0) {
+            return mIndexMin;
+        }
+        if (clamped > 0) {
+            return mIndexMax;
+        }
+        return Math.max(mIndexMin, Math.min(mIndexMax, mBar.getNearestIndex(x, y)));
+    }
+}
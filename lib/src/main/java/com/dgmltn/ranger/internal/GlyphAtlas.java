@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" 
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language 
+ * governing permissions and limitations under the License. 
+ */
+
+package com.dgmltn.ranger.internal;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+
+/**
+ * Rasterizes a small set of characters (digits, sign, decimal point and a few unit characters)
+ * once per color, so that numeric labels can be drawn by copying glyphs out of a single bitmap
+ * instead of going through full text shaping on every frame.
+ * <p/>
+ * The glyphs are rasterized at the largest text size they will be drawn at and scaled down when
+ * drawn smaller, so text size changes, such as those of a pin animating open, don't rebuild the
+ * atlas.
+ * <p/>
+ * Labels containing any character outside of the atlas are not drawn; callers should fall back
+ * to {@link Canvas#drawText(String, float, float, Paint)} when {@link #drawText} returns false.
+ */
+public class GlyphAtlas {
+
+    public static final String DEFAULT_GLYPHS = "0123456789+-.,:%/ \u00b0$\u20ac";
+
+    // Transparent border around each glyph so that anti-aliased edges don't bleed into neighbors
+    private static final int GLYPH_PADDING = 1;
+
+    private final char[] mGlyphs;
+
+    // Index of each ASCII character in mGlyphs, or -1
+    private final int[] mAsciiIndexes = new int[128];
+
+    private final Paint mGlyphPaint = new Paint();
+    private final Paint mBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final float[] mAdvances;
+    private final int[] mCellLefts;
+    private final int[] mCellWidths;
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+    private final RectF mScaledDst = new RectF();
+
+    private Bitmap mBitmap;
+    private int mCellHeight;
+    private int mTop;
+
+    private float mTextSize;
+    private int mColor;
+    private Typeface mTypeface;
+
+    public GlyphAtlas() {
+        this(DEFAULT_GLYPHS);
+    }
+
+    /**
+     * @param glyphs the characters to rasterize into the atlas
+     */
+    public GlyphAtlas(String glyphs) {
+        mGlyphs = glyphs.toCharArray();
+        mAdvances = new float[mGlyphs.length];
+        mCellLefts = new int[mGlyphs.length];
+        mCellWidths = new int[mGlyphs.length];
+
+        for (int i = 0; i < mAsciiIndexes.length; i++) {
+            mAsciiIndexes[i] = -1;
+        }
+        for (int i = 0; i < mGlyphs.length; i++) {
+            if (mGlyphs[i] < mAsciiIndexes.length) {
+                mAsciiIndexes[mGlyphs[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * Makes sure the atlas matches the color and typeface of the given paint and the given
+     * text size, rasterizing the glyphs again if any of them changed. The text size of the paint
+     * itself is ignored, so this is cheap to call on every frame.
+     *
+     * @param textPaint   the paint the labels would otherwise be drawn with
+     * @param maxTextSize the largest text size the labels will be drawn at
+     */
+    public void update(Paint textPaint, float maxTextSize) {
+        if (mBitmap != null &&
+                maxTextSize == mTextSize &&
+                textPaint.getColor() == mColor &&
+                textPaint.getTypeface() == mTypeface) {
+            return;
+        }
+
+        mTextSize = maxTextSize;
+        mColor = textPaint.getColor();
+        mTypeface = textPaint.getTypeface();
+
+        mGlyphPaint.set(textPaint);
+        mGlyphPaint.setTextSize(maxTextSize);
+        mGlyphPaint.setTextAlign(Paint.Align.LEFT);
+
+        Paint.FontMetrics fm = mGlyphPaint.getFontMetrics();
+        mTop = (int) Math.floor(fm.top) - GLYPH_PADDING;
+        mCellHeight = (int) Math.ceil(fm.bottom) + GLYPH_PADDING - mTop;
+
+        int width = 0;
+        for (int i = 0; i < mGlyphs.length; i++) {
+            mAdvances[i] = mGlyphPaint.measureText(mGlyphs, i, 1);
+            mCellLefts[i] = width;
+            mCellWidths[i] = (int) Math.ceil(mAdvances[i]) + GLYPH_PADDING * 2;
+            width += mCellWidths[i];
+        }
+
+        release();
+        mBitmap = Bitmap.createBitmap(Math.max(1, width), Math.max(1, mCellHeight),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mBitmap);
+        for (int i = 0; i < mGlyphs.length; i++) {
+            canvas.drawText(mGlyphs, i, 1, mCellLefts[i] + GLYPH_PADDING, -mTop, mGlyphPaint);
+        }
+    }
+
+    /**
+     * Draws the text by copying glyphs from the atlas. {@link #update(Paint, float)} must have
+     * been called first.
+     *
+     * @param canvas   the canvas to draw to
+     * @param text     the text to draw
+     * @param x        the x-coordinate of the center of the text
+     * @param y        the y-coordinate of the baseline of the text
+     * @param textSize the size to draw the text at, no larger than the atlas text size
+     * @return false, without drawing anything, if the text has characters that aren't in the atlas
+     */
+    public boolean drawText(Canvas canvas, String text, float x, float y, float textSize) {
+        if (mBitmap == null) {
+            return false;
+        }
+
+        final int length = text.length();
+        float width = 0;
+        for (int i = 0; i < length; i++) {
+            int index = indexOf(text.charAt(i));
+            if (index < 0) {
+                return false;
+            }
+            width += mAdvances[index];
+        }
+
+        final float scale = textSize / mTextSize;
+        float penX = x - width * scale / 2f;
+        if (scale == 1f) {
+            // Snap to whole pixels so the glyphs are copied 1:1 without filtering
+            final int top = Math.round(y) + mTop;
+            for (int i = 0; i < length; i++) {
+                int index = indexOf(text.charAt(i));
+                int left = Math.round(penX) - GLYPH_PADDING;
+                setSrc(index);
+                mDst.set(left, top, left + mCellWidths[index], top + mCellHeight);
+                canvas.drawBitmap(mBitmap, mSrc, mDst, mBitmapPaint);
+                penX += mAdvances[index];
+            }
+        } else {
+            final float top = y + mTop * scale;
+            final float bottom = top + mCellHeight * scale;
+            for (int i = 0; i < length; i++) {
+                int index = indexOf(text.charAt(i));
+                float left = penX - GLYPH_PADDING * scale;
+                setSrc(index);
+                mScaledDst.set(left, top, left + mCellWidths[index] * scale, bottom);
+                canvas.drawBitmap(mBitmap, mSrc, mScaledDst, mBitmapPaint);
+                penX += mAdvances[index] * scale;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Frees the atlas bitmap; it is rebuilt on the next {@link #update(Paint, float)}.
+     */
+    public void release() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+    }
+
+    private void setSrc(int index) {
+        mSrc.set(mCellLefts[index], 0, mCellLefts[index] + mCellWidths[index], mCellHeight);
+    }
+
+    private int indexOf(char c) {
+        if (c < mAsciiIndexes.length) {
+            return mAsciiIndexes[c];
+        }
+        for (int i = 0; i < mGlyphs.length; i++) {
+            if (mGlyphs[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -14,17 +14,21 @@
 package com.dgmltn.ranger.internal;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.LightingColorFilter;
 import android.graphics.Paint;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.support.v4.content.ContextCompat;
 import android.text.TextPaint;
 import android.util.AttributeSet;
+import android.util.LruCache;
 import android.view.View;
 
 import com.dgmltn.ranger.R;
@@ -47,6 +51,16 @@ public class PinView extends View {
     // drawn but no value is given.
     private static final float DEFAULT_THUMB_RADIUS_DP = 14;
 
+    // Most tint filters kept for reuse; other colors get a new filter when they are set
+    private static final int MAX_CACHED_PIN_FILTERS = 16;
+
+    // The untinted pin drawable state, shared by every pin of every bar in the process, and the
+    // tint filters of the most recently used colors. The tint is applied per pin, so a color
+    // change only swaps the filter. Only touched from the UI thread.
+    private static Drawable.ConstantState sPinState;
+    private static final LruCache<Integer, ColorFilter> sPinFilters =
+            new LruCache<Integer, ColorFilter>(MAX_CACHED_PIN_FILTERS);
+
     // Member Variables ////////////////////////////////////////////////////////
 
     private String mName;
@@ -71,7 +85,7 @@ public class PinView extends View {
     // Radius of the new thumb if selected
     private int mPinRadiusPx;
 
-    private ColorFilter mPinFilter;
+    private int mPinColor;
 
     private float mPinPadding;
 
@@ -79,6 +93,30 @@ public class PinView extends View {
 
     private Rect mBounds = new Rect();
 
+    // Label metrics, only recalculated when the label or the pin width changes
+    private final Rect mTextBounds = new Rect();
+    private float mTextBaselineOffset;
+    private boolean mTextMetricsValid;
+
+    // Optional label that the text is sized for in place of each label, and its width at the
+    // calibration text size (0 until measured)
+    private String mFixedWidthLabel;
+    private float mFixedWidthLabelWidth;
+
+    // Optional bitmap of the fully expanded pin, without its label; press/release animation
+    // frames draw scaled copies of it instead of rasterizing the drawable again
+    private boolean mSpriteCacheEnabled;
+    private int mExpandedPinRadiusPx;
+    private Bitmap mSprite;
+    private Canvas mSpriteCanvas;
+    private boolean mSpriteValid;
+    private final Paint mSpritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF mSpriteBounds = new RectF();
+    private int mTextColor;
+
+    // Optional glyph atlas used to draw numeric labels without text shaping
+    private GlyphAtlas mGlyphAtlas;
+
     private float mDensity;
 
     private Paint mCirclePaint;
@@ -135,11 +173,20 @@ public class PinView extends View {
     public void init(PointF position, float pinRadiusDP, int pinColor, int textColor,
                      float circleRadius, int circleColor, float minFont, float maxFont) {
 
-        mPin = ContextCompat.getDrawable(getContext(), R.drawable.rotate);
+        setPinColor(pinColor);
 
-        mPosition = position;
+        if (mPosition == null) {
+            mPosition = new PointF(position.x, position.y);
+        } else {
+            mPosition.set(position);
+        }
 
-        mDensity = getResources().getDisplayMetrics().density;
+        float density = getResources().getDisplayMetrics().density;
+        if (density != mDensity) {
+            mSpriteValid = false;
+        }
+        mDensity = density;
+        mTextColor = textColor;
         mMinPinFont = minFont / mDensity;
         mMaxPinFont = maxFont / mDensity;
 
@@ -150,23 +197,153 @@ public class PinView extends View {
 
         // Creates the paint and sets the Paint values
         mTextPaint = new TextPaint();
-        mTextPaint.setTypeface(Typeface.MONOSPACE);
+        initLabelPaint(mTextPaint);
         mTextPaint.setColor(textColor);
-        mTextPaint.setAntiAlias(true);
         mTextPaint.setTextSize(15f * mDensity);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextMetricsValid = false;
+        mFixedWidthLabelWidth = 0;
+        updateTextBaselineOffset();
 
         // Creates the paint and sets the Paint values
         mCirclePaint = new Paint();
         mCirclePaint.setColor(circleColor);
         mCirclePaint.setAntiAlias(true);
 
-        // Color filter for the selection pin
-        mPinFilter = new LightingColorFilter(pinColor, pinColor);
-
         // Sets the minimum touchable area, but allows it to expand based on image size
         mTargetRadiusPx = Math.max(MINIMUM_TARGET_RADIUS_DP * mDensity, mPinRadiusPx);
     }
 
+    /**
+     * Sets the color of the pin. The pin drawable is created once, from state shared with every
+     * other pin, and a color change only swaps its tint filter.
+     *
+     * @param pinColor the color of the pin
+     */
+    public void setPinColor(int pinColor) {
+        if (mPin != null && pinColor == mPinColor) {
+            return;
+        }
+        mPinColor = pinColor;
+
+        if (mPin == null) {
+            if (sPinState == null) {
+                mPin = ContextCompat.getDrawable(getContext(), R.drawable.rotate);
+                sPinState = mPin.getConstantState();
+            } else {
+                mPin = sPinState.newDrawable(getResources());
+            }
+        }
+
+        ColorFilter filter = sPinFilters.get(pinColor);
+        if (filter == null) {
+            filter = new LightingColorFilter(pinColor, pinColor);
+            sPinFilters.put(pinColor, filter);
+        }
+        // The filter is kept by the drawable itself, not by the shared state
+        mPin.setColorFilter(filter);
+        mSpriteValid = false;
+        invalidate();
+    }
+
+    /**
+     * Sets the colors of the pin, its label and its selector circle on the existing drawable and
+     * paints, without re-initializing the pin.
+     *
+     * @param pinColor    the color of the pin
+     * @param textColor   the color of the value text in the pin
+     * @param circleColor the color of the selector circle
+     */
+    public void setColors(int pinColor, int textColor, int circleColor) {
+        setPinColor(pinColor);
+        if (textColor != mTextColor) {
+            mTextColor = textColor;
+            mTextPaint.setColor(textColor);
+        }
+        mCirclePaint.setColor(circleColor);
+        invalidate();
+    }
+
+    /**
+     * Sizes the text for the given label instead of for each label, so that the text size stays
+     * the same as the label changes and labels don't have to be measured while dragging.
+     *
+     * @param widestLabel the widest label that will be shown, or null to size the text for each
+     *                    label again
+     */
+    public void setFixedWidthLabel(String widestLabel) {
+        if (widestLabel == null ? mFixedWidthLabel != null : !widestLabel.equals(mFixedWidthLabel)) {
+            mFixedWidthLabel = widestLabel;
+            mFixedWidthLabelWidth = 0;
+            mTextMetricsValid = false;
+            invalidate();
+        }
+    }
+
+    /**
+     * Enables or disables drawing the pin from a cached bitmap of the fully expanded pin.
+     *
+     * @param enabled true to draw the pin from the sprite cache
+     */
+    public void setSpriteCacheEnabled(boolean enabled) {
+        mSpriteCacheEnabled = enabled;
+        if (!enabled) {
+            releaseSprite();
+        }
+    }
+
+    /**
+     * Sets the radius of the pin when it is fully expanded, which is the size the sprite cache
+     * is rendered at.
+     *
+     * @param radius the expanded radius of the pin in px
+     */
+    public void setExpandedRadius(float radius) {
+        int expandedPinRadiusPx = (int) radius;
+        if (expandedPinRadiusPx != mExpandedPinRadiusPx) {
+            mExpandedPinRadiusPx = expandedPinRadiusPx;
+            mSpriteValid = false;
+        }
+    }
+
+    /**
+     * Enables or disables drawing labels by copying glyphs from a {@link GlyphAtlas}. Labels with
+     * characters outside of the atlas are still drawn as regular text.
+     *
+     * @param enabled true to draw labels from the glyph atlas
+     */
+    public void setGlyphAtlasEnabled(boolean enabled) {
+        if (enabled) {
+            if (mGlyphAtlas == null) {
+                mGlyphAtlas = new GlyphAtlas();
+            }
+        } else {
+            releaseGlyphAtlas();
+            mGlyphAtlas = null;
+        }
+    }
+
+    /**
+     * Frees the glyph atlas bitmap; it is rebuilt on the next draw if still enabled.
+     */
+    public void releaseGlyphAtlas() {
+        if (mGlyphAtlas != null) {
+            mGlyphAtlas.release();
+        }
+    }
+
+    /**
+     * Frees the sprite cache bitmap; it is rebuilt on the next draw if still enabled.
+     */
+    public void releaseSprite() {
+        if (mSprite != null) {
+            mSprite.recycle();
+            mSprite = null;
+            mSpriteCanvas = null;
+        }
+        mSpriteValid = false;
+    }
+
     public int getIndex() {
         return mIndex;
     }
@@ -197,13 +374,51 @@ public class PinView extends View {
         return mPosition;
     }
 
+    /**
+     * Gets the area this pin draws to: the selector circle and, if the pin is expanded, the pin
+     * and its label.
+     *
+     * @param boundsOut the bounds will be stored in this object
+     */
+    public void getDrawBounds(RectF boundsOut) {
+        final float x = mPosition.x;
+        final float y = mPosition.y;
+        boundsOut.set(x - mCircleRadiusPx, y - mCircleRadiusPx,
+                x + mCircleRadiusPx, y + mCircleRadiusPx);
+        if (mPinRadiusPx > 0) {
+            boundsOut.union(x - mPinRadiusPx, y - mPinRadiusPx * 2 - mPinPadding,
+                    x + mPinRadiusPx, y - mPinPadding);
+            // The bounds are needed before the first draw, e.g. to invalidate a pin that just
+            // expanded, so size the label here rather than waiting for draw to do it
+            if (!mTextMetricsValid) {
+                updateTextMetrics();
+            }
+            if (!mTextBounds.isEmpty()) {
+                // At the minimum font size the label can be wider than the pin
+                final float halfTextWidth = mTextBounds.width() / 2f;
+                boundsOut.union(x - halfTextWidth, y + mTextBaselineOffset + mTextBounds.top,
+                        x + halfTextWidth, y + mTextBaselineOffset + mTextBounds.bottom);
+            }
+        }
+        // Leave room for anti-aliasing
+        boundsOut.inset(-1, -1);
+    }
+
     /**
      * Set the label of the pin
      *
      * @param label String label of the pin
+     * @return true if the label changed
      */
-    public void setLabel(String label) {
-        mLabel = label;
+    public boolean setLabel(String label) {
+        if (label == null ? mLabel != null : !label.equals(mLabel)) {
+            mLabel = label;
+            if (mFixedWidthLabel == null) {
+                mTextMetricsValid = false;
+            }
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -256,7 +471,12 @@ public class PinView extends View {
      */
     public void setSize(float size, float padding) {
         mPinPadding = (int) padding;
-        mPinRadiusPx = (int) size;
+        int pinRadiusPx = (int) size;
+        if (pinRadiusPx != mPinRadiusPx) {
+            mPinRadiusPx = pinRadiusPx;
+            mTextMetricsValid = false;
+        }
+        updateTextBaselineOffset();
         invalidate();
     }
 
@@ -273,27 +493,95 @@ public class PinView extends View {
                     (int) mPosition.y - (mPinRadiusPx * 2) - (int) mPinPadding,
                     (int) mPosition.x + mPinRadiusPx,
                     (int) mPosition.y - (int) mPinPadding);
-            mPin.setBounds(mBounds);
-            String text = mLabel;
-
-            calibrateTextSize(mTextPaint, text, mBounds.width());
-            mTextPaint.getTextBounds(text, 0, text.length(), mBounds);
-            mTextPaint.setTextAlign(Paint.Align.CENTER);
-            mPin.setColorFilter(mPinFilter);
-            mPin.draw(canvas);
-            canvas.drawText(text,
-                    mPosition.x, mPosition.y - mPinRadiusPx - mPinPadding + mTextYPadding,
-                    mTextPaint);
+            if (mSpriteCacheEnabled && mExpandedPinRadiusPx > 0) {
+                if (!mSpriteValid) {
+                    updateSprite();
+                }
+                mSpriteBounds.set(mBounds);
+                canvas.drawBitmap(mSprite, null, mSpriteBounds, mSpritePaint);
+            } else {
+                mPin.setBounds(mBounds);
+                mPin.draw(canvas);
+            }
+
+            if (!mTextMetricsValid) {
+                updateTextMetrics();
+            }
+            drawLabel(canvas, mLabel, mPosition.x, mPosition.y + mTextBaselineOffset);
         }
     }
 
     // Private Methods /////////////////////////////////////////////////////////////////
 
+    //Size the text for the current label and pin width and remember its bounds
+    private void updateTextMetrics() {
+        String text = mFixedWidthLabel != null ? mFixedWidthLabel : mLabel;
+        if (text == null) {
+            mTextBounds.setEmpty();
+        } else {
+            calibrateTextSize(mTextPaint, text, mPinRadiusPx * 2);
+            mTextPaint.getTextBounds(text, 0, text.length(), mTextBounds);
+            if (mFixedWidthLabel != null) {
+                // These bounds are kept for every label, so cover the full height of the font
+                mTextBounds.top = Math.min(mTextBounds.top, (int) Math.floor(mTextPaint.ascent()));
+                mTextBounds.bottom = Math.max(mTextBounds.bottom,
+                        (int) Math.ceil(mTextPaint.descent()));
+            }
+        }
+        mTextMetricsValid = true;
+    }
+
+    private void drawLabel(Canvas canvas, String text, float x, float y) {
+        if (mGlyphAtlas != null) {
+            // Rasterized once at the largest label size, so the calibrated size can change
+            // from frame to frame without rebuilding the atlas
+            mGlyphAtlas.update(mTextPaint, mMaxPinFont * mDensity);
+            if (mGlyphAtlas.drawText(canvas, text, x, y, mTextPaint.getTextSize())) {
+                return;
+            }
+        }
+        canvas.drawText(text, x, y, mTextPaint);
+    }
+
+    //Render the fully expanded pin into the sprite bitmap. The label is left out and drawn on
+    //top of it, so that label changes while dragging don't render the sprite again
+    private void updateSprite() {
+        int size = mExpandedPinRadiusPx * 2;
+        if (mSprite == null || mSprite.getWidth() != size || mSprite.getHeight() != size) {
+            releaseSprite();
+            mSprite = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            mSpriteCanvas = new Canvas(mSprite);
+        }
+        mSprite.eraseColor(Color.TRANSPARENT);
+
+        mPin.setBounds(0, 0, size, size);
+        mPin.draw(mSpriteCanvas);
+        mSpriteValid = true;
+    }
+
+    private void updateTextBaselineOffset() {
+        mTextBaselineOffset = -mPinRadiusPx - mPinPadding + mTextYPadding;
+    }
+
+    // Sets up the typeface shared by the label paint and anything measuring labels for it
+    static void initLabelPaint(Paint paint) {
+        paint.setTypeface(Typeface.MONOSPACE);
+        paint.setAntiAlias(true);
+    }
+
     //Set text size based on available pin width.
     private void calibrateTextSize(Paint paint, String text, float boxWidth) {
         paint.setTextSize(10);
 
-        float textSize = paint.measureText(text);
+        float textSize;
+        if (mFixedWidthLabel != null) {
+            if (mFixedWidthLabelWidth == 0) {
+                mFixedWidthLabelWidth = paint.measureText(mFixedWidthLabel);
+            }
+            textSize = mFixedWidthLabelWidth;
+        } else {
+            textSize = paint.measureText(text);
+        }
         float estimatedFontSize = boxWidth * 8 / textSize / mDensity;
 
         if (estimatedFontSize < mMinPinFont) {
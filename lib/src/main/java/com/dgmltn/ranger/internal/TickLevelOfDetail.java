@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.dgmltn.ranger.internal;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Picks the subset of ticks to draw based on the distance between adjacent ticks, so that the
+ * number of ticks drawn is bounded by the length of the bar rather than by the tick count.
+ * When the ticks are denser than the minimum spacing, they are split into minor and major
+ * ticks; otherwise all of them are drawn.
+ * <p/>
+ * Shared by {@link AbsRangeBar} and {@link com.dgmltn.ranger.RangeBarRenderer}.
+ */
+public class TickLevelOfDetail {
+
+    public static final float DEFAULT_MIN_TICK_SPACING_DP = 4;
+    public static final float DEFAULT_MAJOR_TICK_SPACING_DP = 48;
+
+    // Major ticks are drawn this much larger than the minor ones
+    public static final float MAJOR_TICK_SCALE = 1.5f;
+
+    // A major stride of 0 means all ticks are drawn
+    private int mMajorStride;
+    private float[] mMinorPoints = new float[0];
+    private int mMinorPointCount;
+    private float[] mMajorPoints = new float[0];
+    private int mMajorPointCount;
+
+    /**
+     * Picks the ticks to draw out of the given tick table.
+     *
+     * @param tickPoints       the x and y of every tick, in order along the bar
+     * @param tickCount        number of ticks in the table
+     * @param minTickSpacing   ticks are thinned out if any two neighbours are closer than this
+     * @param majorTickSpacing the distance to aim for between major ticks
+     */
+    public void update(float[] tickPoints, int tickCount, float minTickSpacing,
+                       float majorTickSpacing) {
+        mMajorStride = 0;
+        mMinorPointCount = 0;
+        mMajorPointCount = 0;
+
+        if (tickCount < 2) {
+            return;
+        }
+
+        final float spacing = getMinTickSpacing(tickPoints, tickCount);
+        if (spacing <= 0 || spacing >= minTickSpacing) {
+            return;
+        }
+
+        final int lastIndex = tickCount - 1;
+        final int minorStride = getTickStride(minTickSpacing / spacing);
+        int majorStride = getTickStride(majorTickSpacing / spacing);
+        // Every major tick must also land on a minor tick
+        majorStride = Math.max(1, (majorStride + minorStride - 1) / minorStride) * minorStride;
+        mMajorStride = majorStride;
+
+        final int majorCapacity = (lastIndex / majorStride + 2) * 2;
+        if (mMajorPoints.length < majorCapacity) {
+            mMajorPoints = new float[majorCapacity];
+        }
+        final int minorCapacity = (lastIndex / minorStride + 1) * 2;
+        if (mMinorPoints.length < minorCapacity) {
+            mMinorPoints = new float[minorCapacity];
+        }
+
+        // The end of the bar is always marked, so a major tick less than a stride before it
+        // would overlap it; that one is drawn as a minor tick instead, unless it is the start
+        final int lastMajorIndex = lastIndex / majorStride * majorStride;
+        final int droppedMajorIndex = lastMajorIndex != lastIndex ? lastMajorIndex : -1;
+
+        for (int i = 0; i <= lastIndex; i += minorStride) {
+            if (i % majorStride == 0 && (i != droppedMajorIndex || i == 0)) {
+                mMajorPoints[mMajorPointCount++] = tickPoints[i * 2];
+                mMajorPoints[mMajorPointCount++] = tickPoints[i * 2 + 1];
+            } else if (i != lastIndex) {
+                mMinorPoints[mMinorPointCount++] = tickPoints[i * 2];
+                mMinorPoints[mMinorPointCount++] = tickPoints[i * 2 + 1];
+            }
+        }
+        // Always mark the end of the bar
+        if (droppedMajorIndex >= 0) {
+            mMajorPoints[mMajorPointCount++] = tickPoints[lastIndex * 2];
+            mMajorPoints[mMajorPointCount++] = tickPoints[lastIndex * 2 + 1];
+        }
+    }
+
+    /**
+     * Draws the ticks picked by the last {@link #update(float[], int, float, float)}, each group
+     * in a single {@link Canvas#drawPoints(float[], int, int, Paint)} call.
+     *
+     * @param canvas     the canvas to draw to
+     * @param tickPoints the same tick table as was passed to update
+     * @param tickCount  the same tick count as was passed to update
+     * @param tickPaint  paint for the minor ticks; its stroke width is scaled for the major ones
+     */
+    public void draw(Canvas canvas, float[] tickPoints, int tickCount, Paint tickPaint) {
+        if (mMajorStride == 0) {
+            canvas.drawPoints(tickPoints, 0, tickCount * 2, tickPaint);
+        } else {
+            canvas.drawPoints(mMinorPoints, 0, mMinorPointCount, tickPaint);
+            final float strokeWidth = tickPaint.getStrokeWidth();
+            tickPaint.setStrokeWidth(strokeWidth * MAJOR_TICK_SCALE);
+            canvas.drawPoints(mMajorPoints, 0, mMajorPointCount, tickPaint);
+            tickPaint.setStrokeWidth(strokeWidth);
+        }
+    }
+
+    /**
+     * @return the number of ticks between two major ticks, or 0 if all ticks are drawn
+     */
+    public int getMajorStride() {
+        return mMajorStride;
+    }
+
+    /**
+     * @return the smallest distance between neighbouring ticks in the table; the ticks of a bar
+     * needn't be evenly spaced, so the first two aren't enough to go by
+     */
+    static float getMinTickSpacing(float[] tickPoints, int tickCount) {
+        float minSquared = Float.MAX_VALUE;
+        for (int i = 1; i < tickCount; i++) {
+            final float dx = tickPoints[i * 2] - tickPoints[i * 2 - 2];
+            final float dy = tickPoints[i * 2 + 1] - tickPoints[i * 2 - 1];
+            minSquared = Math.min(minSquared, dx * dx + dy * dy);
+        }
+        return (float) Math.sqrt(minSquared);
+    }
+
+    /**
+     * Rounds the given stride up to the next value in the 1, 2, 5, 10, 20, 50... sequence.
+     */
+    public static int getTickStride(float minStride) {
+        int magnitude = 1;
+        while (magnitude < Integer.MAX_VALUE / 10) {
+            if (magnitude >= minStride) {
+                return magnitude;
+            }
+            if (magnitude * 2 >= minStride) {
+                return magnitude * 2;
+            }
+            if (magnitude * 5 >= minStride) {
+                return magnitude * 5;
+            }
+            magnitude *= 10;
+        }
+        return magnitude;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this work except in compliance with the License.
+ * You may obtain a copy of the License in the LICENSE file, or at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+
+package com.dgmltn.ranger.internal;
+
+/**
+ * Recent touch samples of a drag, historical ones included, in a fixed size ring buffer. Once
+ * full, each new sample replaces the oldest one, so a drag never allocates.
+ * <p/>
+ * Also fits the touch velocity to extrapolate where the touch is headed, and interpolates where
+ * it was at a given time. Plain Java, so that it can be tested off the device.
+ */
+class TouchSamples {
+
+    static final int CAPACITY = 64;
+
+    private final float[] mX = new float[CAPACITY];
+    private final float[] mY = new float[CAPACITY];
+    private final long[] mTime = new long[CAPACITY];
+    private int mStart;
+    private int mCount;
+
+    void add(float x, float y, long time) {
+        int index = (mStart + mCount) % CAPACITY;
+        if (mCount == CAPACITY) {
+            mStart = (mStart + 1) % CAPACITY;
+        } else {
+            mCount++;
+        }
+        mX[index] = x;
+        mY[index] = y;
+        mTime[index] = time;
+    }
+
+    void clear() {
+        mStart = 0;
+        mCount = 0;
+    }
+
+    int size() {
+        return mCount;
+    }
+
+    /**
+     * @param i 0 for the oldest sample, up to {@link #size()} - 1 for the newest
+     */
+    float getX(int i) {
+        return mX[(mStart + i) % CAPACITY];
+    }
+
+    float getY(int i) {
+        return mY[(mStart + i) % CAPACITY];
+    }
+
+    long getTime(int i) {
+        return mTime[(mStart + i) % CAPACITY];
+    }
+
+    float getNewestX() {
+        return getX(mCount - 1);
+    }
+
+    float getNewestY() {
+        return getY(mCount - 1);
+    }
+
+    long getNewestTime() {
+        return getTime(mCount - 1);
+    }
+
+    /**
+     * Extrapolates the touch past the newest sample, from a least-squares fit of the velocity
+     * over the samples no older than the window.
+     *
+     * @param windowMillis how far back from the newest sample to fit the velocity
+     * @param aheadMillis  how far past the newest sample to extrapolate
+     * @param pointOut     receives the x and y of the prediction
+     * @return false if there are too few samples in the window to fit a velocity
+     */
+    boolean predict(long windowMillis, long aheadMillis, float[] pointOut) {
+        if (mCount == 0) {
+            return false;
+        }
+        final int newest = mCount - 1;
+        final long newestTime = getTime(newest);
+        final float newestX = getX(newest);
+        final float newestY = getY(newest);
+        int n = 0;
+        float sumT = 0, sumX = 0, sumY = 0, sumTT = 0, sumTX = 0, sumTY = 0;
+        for (int i = newest; i >= 0; i--) {
+            long age = newestTime - getTime(i);
+            if (age > windowMillis) {
+                break;
+            }
+            // Relative to the newest sample, to keep the sums small
+            float t = -age;
+            float x = getX(i) - newestX;
+            float y = getY(i) - newestY;
+            n++;
+            sumT += t;
+            sumX += x;
+            sumY += y;
+            sumTT += t * t;
+            sumTX += t * x;
+            sumTY += t * y;
+        }
+
+        float denominator = n * sumTT - sumT * sumT;
+        if (n < 2 || denominator <= 0) {
+            return false;
+        }
+        float vx = (n * sumTX - sumT * sumX) / denominator;
+        float vy = (n * sumTY - sumT * sumY) / denominator;
+
+        pointOut[0] = newestX + vx * aheadMillis;
+        pointOut[1] = newestY + vy * aheadMillis;
+        return true;
+    }
+
+    /**
+     * Gets where the touch was at the given time, interpolated between the samples around it.
+     * Times before the oldest sample give the oldest sample, and times after the newest sample
+     * give the newest.
+     *
+     * @param time     the time to get the touch position at
+     * @param pointOut receives the x and y of the position
+     */
+    void getPositionAt(long time, float[] pointOut) {
+        if (mCount == 0) {
+            return;
+        }
+        pointOut[0] = getNewestX();
+        pointOut[1] = getNewestY();
+        if (time >= getNewestTime()) {
+            return;
+        }
+        for (int i = mCount - 2; i >= 0; i--) {
+            long sampleTime = getTime(i);
+            if (sampleTime <= time) {
+                long span = getTime(i + 1) - sampleTime;
+                float fraction = span > 0 ? (time - sampleTime) / (float) span : 0f;
+                pointOut[0] = getX(i) + (getX(i + 1) - getX(i)) * fraction;
+                pointOut[1] = getY(i) + (getY(i + 1) - getY(i)) * fraction;
+                return;
+            }
+        }
+        pointOut[0] = getX(0);
+        pointOut[1] = getY(0);
+    }
+}
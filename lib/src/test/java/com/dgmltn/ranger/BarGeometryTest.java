@@ -0,0 +1,210 @@
+package com.dgmltn.ranger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BarGeometryTest {
+
+    private static final float RADIUS = 300f;
+    private static final int[] TICK_COUNTS = {2, 3, 7, 25, 100, 241, 1000};
+
+    // Angles the fast path has to get right: the ends of the arc, the split between clamping
+    // to either end, and a little past both ends
+    private static final float[] ARC_THRESHOLDS = {
+            0f, ArcRangeBar.ARC_SWEEP, BarGeometry.ARC_CLAMP_SPLIT,
+            ArcRangeBar.ARC_SWEEP + 10f, 350f
+    };
+
+    @Test
+    public void fastArcAngleMatchesExactAngle() {
+        for (int i = 0; i < 360000; i++) {
+            assertFastAngle(i / 1000f);
+        }
+        for (float threshold : ARC_THRESHOLDS) {
+            for (int i = -1000; i <= 1000; i++) {
+                assertFastAngle(threshold + i * 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void fastArcAngleClampsLikeExactAngle() {
+        for (int i = -1000; i <= 1000; i++) {
+            float dx = dx(BarGeometry.ARC_CLAMP_SPLIT + i * 1e-5f);
+            float dy = dy(BarGeometry.ARC_CLAMP_SPLIT + i * 1e-5f);
+            float exact = BarGeometry.getArcAngle(dx, dy);
+            float fast = BarGeometry.getFastArcAngle(dx, dy);
+            assertTrue(exact == 0f || exact == ArcRangeBar.ARC_SWEEP);
+            assertEquals(exact, fast, 0f);
+        }
+    }
+
+    @Test
+    public void nearestArcIndexMatchesExactAngle() {
+        for (int tickCount : TICK_COUNTS) {
+            float tickDegrees = ArcRangeBar.ARC_SWEEP / (tickCount - 1f);
+            for (int i = 0; i < 36000; i++) {
+                assertNearestIndex(i / 100f, tickCount);
+            }
+            // Right around the middle between each pair of ticks
+            for (int tick = 0; tick < tickCount - 1; tick++) {
+                float middle = (tick + 0.5f) * tickDegrees;
+                for (int i = -100; i <= 100; i++) {
+                    assertNearestIndex(middle + i * 1e-5f, tickCount);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void compareArcPointsMatchesExactAngles() {
+        for (int i = 0; i < 36000; i++) {
+            float angle = i / 100f;
+            for (float offset : new float[]{0f, 1e-5f, -1e-5f, 1e-3f, -1e-3f, 0.1f, -0.1f}) {
+                float dx1 = dx(angle);
+                float dy1 = dy(angle);
+                float dx2 = dx(angle + offset);
+                float dy2 = dy(angle + offset);
+                int expected = Float.compare(BarGeometry.getArcAngle(dx1, dy1),
+                        BarGeometry.getArcAngle(dx2, dy2));
+                assertEquals("angle " + angle + " offset " + offset, Integer.signum(expected),
+                        Integer.signum(BarGeometry.compareArcPoints(dx1, dy1, dx2, dy2)));
+            }
+        }
+    }
+
+    @Test
+    public void horizontalTickTableMatchesMath() {
+        float leftX = 16f;
+        float rightX = 1063.5f;
+        float y = 42f;
+        for (int tickCount : TICK_COUNTS) {
+            float[] table = new float[tickCount * 2];
+            BarGeometry.fillHorizontalTickPoints(leftX, rightX, y, tickCount, table);
+            for (int i = 0; i < tickCount; i++) {
+                String message = "tick " + i + " of " + tickCount;
+                // Exactly what the view computes per index
+                assertEquals(message, BarGeometry.getHorizontalTickX(leftX, rightX, tickCount, i),
+                        table[i * 2], 0f);
+                assertEquals(message, y, table[i * 2 + 1], 0f);
+                double x = leftX + (rightX - leftX) * (double) i / (tickCount - 1);
+                assertEquals(message, x, table[i * 2], 1e-3);
+            }
+            // The ends land exactly on the ends of the bar
+            assertEquals(leftX, table[0], 0f);
+            assertEquals(rightX, table[tickCount * 2 - 2], 0f);
+        }
+    }
+
+    @Test
+    public void arcTickTableMatchesMath() {
+        float centerX = 250f;
+        float centerY = 180.25f;
+        for (int tickCount : TICK_COUNTS) {
+            float[] table = new float[tickCount * 2];
+            BarGeometry.fillArcTickPoints(centerX, centerY, RADIUS, tickCount, table);
+            for (int i = 0; i < tickCount; i++) {
+                String message = "tick " + i + " of " + tickCount;
+                double radians = Math.toRadians(
+                        ArcRangeBar.ARC_START + ArcRangeBar.ARC_SWEEP * (double) i / (tickCount - 1));
+                assertEquals(message, centerX + RADIUS * Math.cos(radians), table[i * 2], 1e-3);
+                assertEquals(message, centerY + RADIUS * Math.sin(radians), table[i * 2 + 1], 1e-3);
+                // And the table maps back to its own index
+                assertEquals(message, i, BarGeometry.getNearestArcIndex(table[i * 2] - centerX,
+                        table[i * 2 + 1] - centerY, tickCount));
+            }
+        }
+    }
+
+    @Test
+    public void leavesOutOnlyCoveredBarSegments() {
+        float[] segments = new float[4];
+        // The baseline drew the whole bar every frame: 1 segment, 1000 px
+        float full = 1000f;
+
+        // Connecting line covers the bar: the part under it is left out
+        assertEquals(2, BarGeometry.getBarSegments(0f, full, 200f, 700f, false, true, true,
+                segments));
+        assertSegment(segments, 0, 0f, 200f);
+        assertSegment(segments, 1, 700f, full);
+        assertEquals(full - 500f, getDrawnLength(segments, 2), 0f);
+
+        // Translucent or thinner connecting line: the bar is drawn in full, as before
+        assertEquals(1, BarGeometry.getBarSegments(0f, full, 200f, 700f, false, false, false,
+                segments));
+        assertSegment(segments, 0, 0f, full);
+        assertEquals(full, getDrawnLength(segments, 1), 0f);
+
+        // Pins at the ends: nothing of the bar is left to draw
+        assertEquals(0, BarGeometry.getBarSegments(0f, full, 0f, full, false, true, true,
+                segments));
+    }
+
+    @Test
+    public void leavesOutOnlyCoveredInvertedBarSegments() {
+        float[] segments = new float[4];
+        float full = ArcRangeBar.ARC_SWEEP;
+
+        assertEquals(1, BarGeometry.getBarSegments(0f, full, 60f, 200f, true, true, true,
+                segments));
+        assertSegment(segments, 0, 60f, 200f);
+
+        // Only the second part of the connecting line covers the bar
+        assertEquals(1, BarGeometry.getBarSegments(0f, full, 60f, 200f, true, false, true,
+                segments));
+        assertSegment(segments, 0, 0f, 200f);
+
+        assertEquals(1, BarGeometry.getBarSegments(0f, full, 60f, 200f, true, true, false,
+                segments));
+        assertSegment(segments, 0, 60f, full);
+
+        assertEquals(1, BarGeometry.getBarSegments(0f, full, 60f, 200f, true, false, false,
+                segments));
+        assertSegment(segments, 0, 0f, full);
+
+        // Pins together
+        assertEquals(0, BarGeometry.getBarSegments(0f, full, 90f, 90f, true, true, true,
+                segments));
+    }
+
+    // Points at the given normalized angle
+    private static float dx(float normalized) {
+        return (float) (RADIUS * Math.cos(Math.toRadians(ArcRangeBar.ARC_START + normalized)));
+    }
+
+    private static float dy(float normalized) {
+        return (float) (RADIUS * Math.sin(Math.toRadians(ArcRangeBar.ARC_START + normalized)));
+    }
+
+    private static void assertFastAngle(float normalized) {
+        float dx = dx(normalized);
+        float dy = dy(normalized);
+        float exact = BarGeometry.getArcAngle(dx, dy);
+        float fast = BarGeometry.getFastArcAngle(dx, dy);
+        assertEquals("angle " + normalized, exact, fast, BarGeometry.FAST_ANGLE_TOLERANCE);
+    }
+
+    private static void assertNearestIndex(float normalized, int tickCount) {
+        float dx = dx(normalized);
+        float dy = dy(normalized);
+        float tickDegrees = ArcRangeBar.ARC_SWEEP / (tickCount - 1f);
+        int expected = (int) (BarGeometry.getArcAngle(dx, dy) / tickDegrees + 0.5f);
+        assertEquals("angle " + normalized + " ticks " + tickCount, expected,
+                BarGeometry.getNearestArcIndex(dx, dy, tickCount));
+    }
+
+    private static void assertSegment(float[] segments, int i, float start, float end) {
+        assertEquals("start of segment " + i, start, segments[i * 2], 0f);
+        assertEquals("end of segment " + i, end, segments[i * 2 + 1], 0f);
+    }
+
+    private static float getDrawnLength(float[] segments, int count) {
+        float length = 0f;
+        for (int i = 0; i < count; i++) {
+            length += segments[i * 2 + 1] - segments[i * 2];
+        }
+        return length;
+    }
+}
@@ -0,0 +1,43 @@
+package com.dgmltn.ranger.internal;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the bytes allocated on the current thread by a piece of work.
+ */
+final class AllocationCounter {
+
+    // The work is measured this many times and the least is kept: an allocation in the work
+    // shows up every time, while the JIT replacing code in the middle of a run doesn't
+    private static final int RUNS = 3;
+
+    private AllocationCounter() {
+    }
+
+    /**
+     * Runs the work a few times, after the caller has warmed it up.
+     *
+     * @return the fewest bytes allocated by one run of the work
+     */
+    static long getAllocatedBytes(Runnable work) {
+        // Fail rather than skip, so that the check can't silently stop running
+        assertTrue("Per-thread allocation counters are needed for this test",
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue("Per-thread allocation counters are needed for this test",
+                threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        long threadId = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            work.run();
+            least = Math.min(least, threadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return least;
+    }
+}
@@ -0,0 +1,159 @@
+package com.dgmltn.ranger.internal;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks of the math done for every touch event and frame on the arc bar. Each prints its
+ * numbers and fails if the measured code allocates.
+ * <p/>
+ * The arc modes are measured on the CPU up to where the platform takes over: the Bezier mode
+ * builds its path in Java, the native mode hands the arc to Canvas#drawArc. Rasterizing the arc
+ * is left to the device and isn't measured here.
+ */
+public class ArcUtilsBenchmarkTest {
+
+    private static final int ITERATIONS = 200000;
+    private static final int TIMED_RUNS = 3;
+    private static final float START_ANGLE = 120f;
+    private static final float[] SWEEPS = {1f, 10f, 45f, 90f, 180f, 270f, 300f};
+
+    // Touch points relative to the center of the arc, all around it and at a few distances
+    private static final int TOUCH_POINTS = 4096;
+    private static final int TOUCH_PASSES = 500;
+
+    // Counts what the platform would be asked to draw
+    private static class CountingCanvas extends Canvas {
+        int mDrawPathCalls;
+        int mDrawArcCalls;
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+            mDrawPathCalls++;
+        }
+
+        @Override
+        public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter,
+                            Paint paint) {
+            mDrawArcCalls++;
+        }
+    }
+
+    private static class CountingPath extends Path {
+        int mCubics;
+
+        @Override
+        public void rewind() {
+            mCubics = 0;
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+        }
+
+        @Override
+        public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            mCubics++;
+        }
+    }
+
+    @Test
+    public void bezierAndNativeArcs() {
+        final CountingCanvas canvas = new CountingCanvas();
+        final CountingPath path = new CountingPath();
+        final Paint paint = new Paint();
+        final PointF center = new PointF();
+        center.x = 500f;
+        center.y = 500f;
+        final float radius = 400f;
+        final RectF oval = new RectF();
+        oval.left = center.x - radius;
+        oval.top = center.y - radius;
+        oval.right = center.x + radius;
+        oval.bottom = center.y + radius;
+
+        System.out.println("sweep  mode    ns/arc  bytes/arc  cubics");
+        for (final int mode : new int[]{ArcUtils.MODE_BEZIER, ArcUtils.MODE_NATIVE}) {
+            for (final float sweep : SWEEPS) {
+                Runnable work = new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            ArcUtils.drawArc(canvas, mode, center, radius, START_ANGLE, sweep,
+                                    paint, ArcUtils.DEFAULT_POINTS_ON_CIRCLE, path, oval);
+                        }
+                    }
+                };
+                long nanos = time(work);
+                long bytes = AllocationCounter.getAllocatedBytes(work);
+
+                System.out.println(String.format("%5.0f  %-6s  %6.1f  %9.2f  %6d", sweep,
+                        mode == ArcUtils.MODE_NATIVE ? "native" : "bezier",
+                        nanos / (double) ITERATIONS, bytes / (double) ITERATIONS,
+                        mode == ArcUtils.MODE_NATIVE ? 0 : path.mCubics));
+                assertEquals("bytes allocated drawing " + ITERATIONS + " arcs", 0, bytes);
+            }
+        }
+        assertTrue(canvas.mDrawPathCalls > 0);
+        assertTrue(canvas.mDrawArcCalls > 0);
+    }
+
+    @Test
+    public void fastAtan2AndMathAtan2() {
+        final float[] xs = new float[TOUCH_POINTS];
+        final float[] ys = new float[TOUCH_POINTS];
+        for (int i = 0; i < TOUCH_POINTS; i++) {
+            double radians = Math.toRadians(360d * i / TOUCH_POINTS);
+            float radius = 50f + 150f * (i % 7);
+            xs[i] = (float) (radius * Math.cos(radians));
+            ys[i] = (float) (radius * Math.sin(radians));
+        }
+
+        System.out.println("atan2       ns/event  bytes/event");
+        for (final boolean fast : new boolean[]{false, true}) {
+            final float[] sum = new float[1];
+            Runnable work = new Runnable() {
+                @Override
+                public void run() {
+                    for (int pass = 0; pass < TOUCH_PASSES; pass++) {
+                        for (int i = 0; i < TOUCH_POINTS; i++) {
+                            sum[0] += fast
+                                    ? ArcUtils.fastAtan2Degrees(ys[i], xs[i])
+                                    : (float) Math.toDegrees(Math.atan2(ys[i], xs[i]));
+                        }
+                    }
+                }
+            };
+            long nanos = time(work);
+            long bytes = AllocationCounter.getAllocatedBytes(work);
+
+            int events = TOUCH_POINTS * TOUCH_PASSES;
+            System.out.println(String.format("%-10s  %8.2f  %11.2f",
+                    fast ? "fast" : "Math.atan2", nanos / (double) events,
+                    bytes / (double) events));
+            assertEquals("bytes allocated for " + events + " events", 0, bytes);
+            // Uses the result, so that the work can't be optimized away
+            assertTrue(!Float.isNaN(sum[0]));
+        }
+    }
+
+    // Warms up, then returns the best of a few timed runs
+    private static long time(Runnable work) {
+        work.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            work.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
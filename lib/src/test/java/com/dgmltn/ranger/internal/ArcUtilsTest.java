@@ -0,0 +1,70 @@
+package com.dgmltn.ranger.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArcUtilsTest {
+
+    private static final float[] RADII = {1e-3f, 1f, 37.5f, 1e4f};
+
+    @Test
+    public void fastAtan2IsWithinBoundAllAround() {
+        for (float radius : RADII) {
+            for (int i = -18000; i <= 18000; i++) {
+                double radians = Math.toRadians(i / 100d);
+                float x = (float) (radius * Math.cos(radians));
+                float y = (float) (radius * Math.sin(radians));
+                assertWithinBound(y, x);
+            }
+        }
+    }
+
+    @Test
+    public void fastAtan2IsWithinBoundInEveryQuadrant() {
+        // Points off the unit circle, in each quadrant and on both sides of the diagonals
+        float[] values = {1e-3f, 0.5f, 1f, 1.0001f, 2f, 3f, 1000f};
+        for (float a : values) {
+            for (float b : values) {
+                assertWithinBound(a, b);
+                assertWithinBound(a, -b);
+                assertWithinBound(-a, b);
+                assertWithinBound(-a, -b);
+            }
+        }
+    }
+
+    @Test
+    public void fastAtan2OnTheAxes() {
+        assertEquals(0f, ArcUtils.fastAtan2Degrees(0f, 5f), 0f);
+        assertEquals(90f, ArcUtils.fastAtan2Degrees(5f, 0f), ArcUtils.FAST_ATAN2_MAX_ERROR_DEGREES);
+        assertEquals(180f, ArcUtils.fastAtan2Degrees(0f, -5f), ArcUtils.FAST_ATAN2_MAX_ERROR_DEGREES);
+        assertEquals(-90f, ArcUtils.fastAtan2Degrees(-5f, 0f), ArcUtils.FAST_ATAN2_MAX_ERROR_DEGREES);
+    }
+
+    @Test
+    public void fastAtan2OfZero() {
+        assertEquals(0f, ArcUtils.fastAtan2Degrees(0f, 0f), 0f);
+        assertEquals(0f, ArcUtils.fastAtan2Degrees(-0f, -0f), 0f);
+    }
+
+    @Test
+    public void fastAtan2StaysInRange() {
+        for (int i = -18000; i <= 18000; i++) {
+            double radians = Math.toRadians(i / 100d);
+            float angle = ArcUtils.fastAtan2Degrees((float) Math.sin(radians),
+                    (float) Math.cos(radians));
+            assertTrue("angle " + angle, angle >= -180f && angle <= 180f);
+        }
+    }
+
+    private static void assertWithinBound(float y, float x) {
+        double exact = Math.toDegrees(Math.atan2(y, x));
+        double error = Math.abs(ArcUtils.fastAtan2Degrees(y, x) - exact);
+        // -180 and 180 are the same angle
+        error = Math.min(error, Math.abs(error - 360d));
+        assertTrue("atan2(" + y + ", " + x + ") off by " + error,
+                error <= ArcUtils.FAST_ATAN2_MAX_ERROR_DEGREES);
+    }
+}
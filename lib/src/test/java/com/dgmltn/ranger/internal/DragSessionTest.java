@@ -0,0 +1,189 @@
+package com.dgmltn.ranger.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DragSessionTest {
+
+    private static final int TICK_COUNT = 101;
+    private static final float TICK_DISTANCE = 10f;
+    private static final float BAR_Y = 50f;
+    private static final int WARM_UP_DRAGS = 50;
+
+    // A horizontal bar from x = 0 to 1000 with a tick every 10 px
+    private static class LineBar implements DragSession.Bar {
+        @Override
+        public int getTickCount() {
+            return TICK_COUNT;
+        }
+
+        @Override
+        public void getPointOfIndex(int index, float[] pointOut) {
+            pointOut[0] = index * TICK_DISTANCE;
+            pointOut[1] = BAR_Y;
+        }
+
+        @Override
+        public void getNearestPointOnBar(float x, float y, float[] pointOut) {
+            pointOut[0] = Math.max(0f, Math.min((TICK_COUNT - 1) * TICK_DISTANCE, x));
+            pointOut[1] = BAR_Y;
+        }
+
+        @Override
+        public int comparePointsOnBar(float x1, float y1, float x2, float y2) {
+            return Float.compare(x1, x2);
+        }
+
+        @Override
+        public int getNearestIndex(float x, float y) {
+            return (int) ((x + TICK_DISTANCE / 2f) / TICK_DISTANCE);
+        }
+    }
+
+    @Test
+    public void limitsTheFirstPinToBeforeTheSecond() {
+        DragSession session = new DragSession(new LineBar());
+        session.bind(true, 40);
+        assertEquals(0, session.getIndexMin());
+        assertEquals(39, session.getIndexMax());
+
+        float[] point = new float[2];
+        assertEquals(12, session.drag(118f, 80f, point));
+        assertEquals(118f, point[0], 0f);
+        assertEquals(BAR_Y, point[1], 0f);
+
+        // Past the other pin
+        assertEquals(39, session.drag(700f, BAR_Y, point));
+        assertEquals(390f, point[0], 0f);
+
+        // Off the start of the bar
+        assertEquals(0, session.drag(-50f, BAR_Y, point));
+        assertEquals(0f, point[0], 0f);
+    }
+
+    @Test
+    public void limitsTheSecondPinToAfterTheFirst() {
+        DragSession session = new DragSession(new LineBar());
+        session.bind(false, 40);
+        assertEquals(41, session.getIndexMin());
+        assertEquals(TICK_COUNT - 1, session.getIndexMax());
+
+        float[] point = new float[2];
+        assertEquals(41, session.drag(100f, BAR_Y, point));
+        assertEquals(410f, point[0], 0f);
+        assertEquals(-1, session.clamp(100f, BAR_Y, point));
+        assertEquals(0, session.clamp(500f, BAR_Y, point));
+        assertEquals(TICK_COUNT - 1, session.drag(5000f, BAR_Y, point));
+        assertEquals(1000f, point[0], 0f);
+    }
+
+    @Test
+    public void rebindsWhenTheOtherPinMoves() {
+        DragSession session = new DragSession(new LineBar());
+        assertFalse(session.isFor(true, 40));
+
+        session.bind(true, 40);
+        assertTrue(session.isFor(true, 40));
+        assertFalse(session.isFor(false, 40));
+        assertFalse(session.isFor(true, 41));
+
+        session.bind(true, 60);
+        assertEquals(59, session.getIndexMax());
+
+        session.reset();
+        assertFalse(session.isFor(true, 60));
+    }
+
+    @Test
+    public void doesNotAllocateWhileDragging() {
+        final Drag drag = new Drag();
+
+        // Warm up first, so that class loading and compilation aren't counted
+        for (int i = 0; i < WARM_UP_DRAGS; i++) {
+            drag.run(i * 10000);
+        }
+        long bytes = AllocationCounter.getAllocatedBytes(new Runnable() {
+            @Override
+            public void run() {
+                drag.run(WARM_UP_DRAGS * 10000);
+            }
+        });
+
+        assertEquals(0, bytes);
+        assertTrue(drag.mTickCrossings > 0);
+    }
+
+    /**
+     * The drag path of the view with its geometry and pins reduced to plain values: touch
+     * samples, one applied per frame through the drag session, a prediction per frame scored
+     * against the samples that follow, tick crossings moving the pin, the other pin moved from
+     * outside during the drag, and the release snapping the pin to its tick.
+     */
+    private static class Drag {
+        private static final int EVENTS = 1000;
+        private static final int EVENTS_PER_FRAME = 2;
+
+        private final LineBar mBar = new LineBar();
+        private final DragSession mSession = new DragSession(mBar);
+        private final TouchSamples mSamples = new TouchSamples();
+        private final float[] mPoint = new float[2];
+        private final float[] mPrediction = new float[2];
+        private int mPinIndex;
+        private int mOtherPinIndex;
+        private float mPinX;
+        private int mTickCrossings;
+        private float mPredictionError;
+
+        void run(long start) {
+            // Press the first pin
+            mPinIndex = 0;
+            mOtherPinIndex = TICK_COUNT - 1;
+            mSamples.clear();
+            mSession.reset();
+
+            for (int i = 0; i < EVENTS; i++) {
+                // Back and forth over the whole bar, a little off of it
+                float phase = (i % 400) / 200f;
+                float x = (phase < 1f ? phase : 2f - phase) * 1100f - 50f;
+                mSamples.add(x, BAR_Y + 20f, start + i * 4);
+
+                if (i == EVENTS / 2) {
+                    // The other pin is moved from outside during the drag
+                    mOtherPinIndex = TICK_COUNT - 20;
+                }
+                if (i % EVENTS_PER_FRAME == EVENTS_PER_FRAME - 1) {
+                    frame();
+                }
+            }
+
+            // Release: the up event is applied, then the pin snaps to its tick
+            frame();
+            mSession.bind(true, mOtherPinIndex);
+            mPinIndex = mBar.getNearestIndex(mPinX, BAR_Y);
+            mBar.getPointOfIndex(mPinIndex, mPoint);
+            mPinX = mPoint[0];
+            mSession.reset();
+        }
+
+        private void frame() {
+            long newestTime = mSamples.getNewestTime();
+            mSamples.getPositionAt(newestTime - 8, mPoint);
+            mPredictionError += Math.abs(mPoint[0] - mPrediction[0]);
+
+            mSession.bind(true, mOtherPinIndex);
+            int index = mSession.drag(mSamples.getNewestX(), mSamples.getNewestY(), mPoint);
+            if (index != mPinIndex) {
+                mPinIndex = index;
+                mTickCrossings++;
+            }
+            mPinX = mPoint[0];
+
+            if (mSamples.predict(50, 8, mPrediction)) {
+                mSession.clamp(mPrediction[0], mPrediction[1], mPoint);
+            }
+        }
+    }
+}
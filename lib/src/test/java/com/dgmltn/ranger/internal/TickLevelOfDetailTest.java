@@ -0,0 +1,143 @@
+package com.dgmltn.ranger.internal;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickLevelOfDetailTest {
+
+    private static final float BAR_LENGTH = 500f;
+    private static final float MIN_TICK_SPACING = 4f;
+    private static final float MAJOR_TICK_SPACING = 48f;
+
+    // Counts the draw calls instead of drawing, and keeps the x of the points of each call
+    private static class CountingCanvas extends Canvas {
+        final List<float[]> mDrawPointsXs = new ArrayList<>();
+        int mDrawCircleCalls;
+        int mPoints;
+
+        @Override
+        public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+            float[] xs = new float[count / 2];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = pts[offset + i * 2];
+            }
+            mDrawPointsXs.add(xs);
+            mPoints += count / 2;
+        }
+
+        @Override
+        public void drawPoints(float[] pts, Paint paint) {
+            drawPoints(pts, 0, pts.length, paint);
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+            mDrawCircleCalls++;
+        }
+    }
+
+    @Test
+    public void drawsTenTicksInOneCall() {
+        CountingCanvas canvas = draw(evenTicks(10), 10);
+        assertEquals(1, canvas.mDrawPointsXs.size());
+        assertEquals(0, canvas.mDrawCircleCalls);
+        assertEquals(10, canvas.mPoints);
+    }
+
+    @Test
+    public void drawsAHundredTicksInOneCall() {
+        // 5 px apart, still above the minimum spacing
+        CountingCanvas canvas = draw(evenTicks(100), 100);
+        assertEquals(1, canvas.mDrawPointsXs.size());
+        assertEquals(0, canvas.mDrawCircleCalls);
+        assertEquals(100, canvas.mPoints);
+    }
+
+    @Test
+    public void thinsOutAThousandTicks() {
+        // Half a pixel apart: every 10th tick is drawn, every 100th as a major tick
+        CountingCanvas canvas = draw(evenTicks(1000), 1000);
+        assertEquals(2, canvas.mDrawPointsXs.size());
+        assertEquals(0, canvas.mDrawCircleCalls);
+        assertEquals(101, canvas.mPoints);
+    }
+
+    @Test
+    public void dropsTheMajorTickNextToTheEnd() {
+        float[] tickPoints = evenTicks(1000);
+        CountingCanvas canvas = draw(tickPoints, 1000);
+        float[] minors = canvas.mDrawPointsXs.get(0);
+        float[] majors = canvas.mDrawPointsXs.get(1);
+
+        // Tick 900 would overlap the end marker at tick 999, so it is drawn as a minor tick
+        assertEquals(10, majors.length);
+        assertTrue(contains(majors, tickPoints[0]));
+        assertTrue(contains(majors, tickPoints[800 * 2]));
+        assertFalse(contains(majors, tickPoints[900 * 2]));
+        assertTrue(contains(minors, tickPoints[900 * 2]));
+        assertTrue(contains(majors, tickPoints[999 * 2]));
+    }
+
+    @Test
+    public void keepsTheStartWhenTheEndIsWithinAStride() {
+        // 60 ticks less than half a pixel apart: a major stride of 100 covers the whole bar
+        float[] tickPoints = new float[60 * 2];
+        for (int i = 0; i < 60; i++) {
+            tickPoints[i * 2] = i * 0.4f;
+        }
+        CountingCanvas canvas = draw(tickPoints, 60);
+        float[] majors = canvas.mDrawPointsXs.get(1);
+        assertEquals(2, majors.length);
+        assertTrue(contains(majors, tickPoints[0]));
+        assertTrue(contains(majors, tickPoints[59 * 2]));
+    }
+
+    @Test
+    public void spacingComesFromTheClosestTicks() {
+        // Wide apart at the start, half a pixel apart from then on
+        int tickCount = 1000;
+        float[] tickPoints = new float[tickCount * 2];
+        for (int i = 1; i < tickCount; i++) {
+            tickPoints[i * 2] = 100f + (i - 1) * 0.5f;
+        }
+        assertEquals(0.5f, TickLevelOfDetail.getMinTickSpacing(tickPoints, tickCount), 1e-4f);
+
+        TickLevelOfDetail levelOfDetail = new TickLevelOfDetail();
+        levelOfDetail.update(tickPoints, tickCount, MIN_TICK_SPACING, MAJOR_TICK_SPACING);
+        assertEquals(100, levelOfDetail.getMajorStride());
+    }
+
+    private static float[] evenTicks(int tickCount) {
+        float[] tickPoints = new float[tickCount * 2];
+        for (int i = 0; i < tickCount; i++) {
+            tickPoints[i * 2] = BAR_LENGTH / (tickCount - 1) * i;
+            tickPoints[i * 2 + 1] = 0f;
+        }
+        return tickPoints;
+    }
+
+    private static CountingCanvas draw(float[] tickPoints, int tickCount) {
+        TickLevelOfDetail levelOfDetail = new TickLevelOfDetail();
+        levelOfDetail.update(tickPoints, tickCount, MIN_TICK_SPACING, MAJOR_TICK_SPACING);
+
+        CountingCanvas canvas = new CountingCanvas();
+        levelOfDetail.draw(canvas, tickPoints, tickCount, new Paint());
+        return canvas;
+    }
+
+    private static boolean contains(float[] xs, float x) {
+        float[] sorted = Arrays.copyOf(xs, xs.length);
+        Arrays.sort(sorted);
+        return Arrays.binarySearch(sorted, x) >= 0;
+    }
+}
@@ -0,0 +1,133 @@
+package com.dgmltn.ranger.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TouchSamplesTest {
+
+    private static final float DELTA = 1e-3f;
+
+    @Test
+    public void keepsSamplesInOrder() {
+        TouchSamples samples = new TouchSamples();
+        samples.add(1f, 2f, 10);
+        samples.add(3f, 4f, 20);
+
+        assertEquals(2, samples.size());
+        assertEquals(1f, samples.getX(0), 0f);
+        assertEquals(2f, samples.getY(0), 0f);
+        assertEquals(10, samples.getTime(0));
+        assertEquals(3f, samples.getNewestX(), 0f);
+        assertEquals(4f, samples.getNewestY(), 0f);
+        assertEquals(20, samples.getNewestTime());
+    }
+
+    @Test
+    public void dropsOldestSamplesWhenFull() {
+        TouchSamples samples = new TouchSamples();
+        int count = TouchSamples.CAPACITY + 10;
+        for (int i = 0; i < count; i++) {
+            samples.add(i, -i, i);
+        }
+
+        assertEquals(TouchSamples.CAPACITY, samples.size());
+        assertEquals(10f, samples.getX(0), 0f);
+        assertEquals(-10f, samples.getY(0), 0f);
+        assertEquals(10, samples.getTime(0));
+        assertEquals(count - 1f, samples.getNewestX(), 0f);
+        assertEquals(count - 1, samples.getNewestTime());
+    }
+
+    @Test
+    public void clearEmptiesTheBuffer() {
+        TouchSamples samples = new TouchSamples();
+        samples.add(1f, 2f, 10);
+        samples.clear();
+        assertEquals(0, samples.size());
+
+        samples.add(5f, 6f, 30);
+        assertEquals(1, samples.size());
+        assertEquals(5f, samples.getNewestX(), 0f);
+    }
+
+    @Test
+    public void predictsConstantVelocity() {
+        TouchSamples samples = new TouchSamples();
+        // 2 px/ms right and 0.5 px/ms up, sampled every 8 ms
+        for (int t = 0; t <= 80; t += 8) {
+            samples.add(100f + 2f * t, 300f - 0.5f * t, 1000 + t);
+        }
+
+        float[] point = new float[2];
+        assertTrue(samples.predict(50, 16, point));
+        assertEquals(100f + 2f * 96, point[0], DELTA);
+        assertEquals(300f - 0.5f * 96, point[1], DELTA);
+    }
+
+    @Test
+    public void predictsFromTheWindowOnly() {
+        TouchSamples samples = new TouchSamples();
+        // Moving left at first, then right; only the last 50 ms count
+        for (int t = 0; t < 200; t += 10) {
+            samples.add(1000f - 3f * t, 0f, t);
+        }
+        float x = samples.getNewestX();
+        long time = samples.getNewestTime();
+        for (int i = 1; i <= 6; i++) {
+            samples.add(x + 1f * i * 10, 0f, time + i * 10);
+        }
+
+        float[] point = new float[2];
+        assertTrue(samples.predict(50, 10, point));
+        assertEquals(samples.getNewestX() + 10f, point[0], DELTA);
+        assertEquals(0f, point[1], DELTA);
+    }
+
+    @Test
+    public void cannotPredictWithoutEnoughSamples() {
+        TouchSamples samples = new TouchSamples();
+        float[] point = new float[2];
+        assertFalse(samples.predict(50, 16, point));
+
+        samples.add(1f, 1f, 0);
+        assertFalse(samples.predict(50, 16, point));
+
+        // Out of the window
+        samples.add(2f, 2f, 100);
+        assertFalse(samples.predict(50, 16, point));
+
+        // All at the same time
+        samples.add(3f, 3f, 100);
+        assertFalse(samples.predict(50, 16, point));
+    }
+
+    @Test
+    public void interpolatesPositionAtTime() {
+        TouchSamples samples = new TouchSamples();
+        samples.add(0f, 0f, 0);
+        samples.add(10f, 20f, 10);
+        samples.add(30f, 20f, 20);
+
+        float[] point = new float[2];
+        samples.getPositionAt(5, point);
+        assertEquals(5f, point[0], DELTA);
+        assertEquals(10f, point[1], DELTA);
+
+        samples.getPositionAt(15, point);
+        assertEquals(20f, point[0], DELTA);
+        assertEquals(20f, point[1], DELTA);
+
+        samples.getPositionAt(10, point);
+        assertEquals(10f, point[0], DELTA);
+        assertEquals(20f, point[1], DELTA);
+
+        // Clamped to the samples
+        samples.getPositionAt(-5, point);
+        assertEquals(0f, point[0], DELTA);
+        samples.getPositionAt(25, point);
+        assertEquals(30f, point[0], DELTA);
+    }
+}